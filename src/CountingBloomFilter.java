@@ -0,0 +1,123 @@
+package src;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe counting Bloom filter over 64-bit key hashes.
+ * Each cell is a 4-bit counter packed sixteen to a long, so the filter
+ * supports removals at half a byte per cell. A counter that reaches 15
+ * saturates and is never decremented again, which can only cause extra
+ * false positives, never false negatives.
+ */
+final class CountingBloomFilter {
+
+    private static final int BITS_PER_COUNTER = 4;
+    private static final int COUNTERS_PER_WORD = Long.SIZE / BITS_PER_COUNTER;
+    private static final long COUNTER_MASK = 0xFL;
+    private static final long SATURATED = COUNTER_MASK;
+
+    private final AtomicLongArray words;
+    private final long cellCount;
+    private final int hashCount;
+    private final AtomicLong approximateSize = new AtomicLong();
+
+    /**
+     * Sizes the filter for the expected number of keys and target false-positive rate.
+     * @param expectedKeys Number of keys the filter should hold at the target rate.
+     * @param falsePositiveRate Target false-positive probability, between 0 and 1 (exclusive).
+     * @throws IllegalArgumentException if either argument is out of range.
+     */
+    CountingBloomFilter(long expectedKeys, double falsePositiveRate) {
+        if (expectedKeys <= 0 || falsePositiveRate <= 0.0 || falsePositiveRate >= 1.0) {
+            throw new IllegalArgumentException("expectedKeys must be positive and falsePositiveRate in (0, 1)");
+        }
+        // Standard Bloom filter sizing: m = -n ln p / (ln 2)^2, k = m/n ln 2
+        long cells = (long) Math.ceil(-expectedKeys * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (cells + COUNTERS_PER_WORD - 1) / COUNTERS_PER_WORD);
+        this.words = new AtomicLongArray(Math.max(1, words));
+        this.cellCount = (long) this.words.length() * COUNTERS_PER_WORD;
+        this.hashCount = Math.max(1, (int) Math.round((double) cellCount / expectedKeys * Math.log(2)));
+    }
+
+    void add(long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            adjust(cell(hash, i), 1);
+        }
+        approximateSize.incrementAndGet();
+    }
+
+    /**
+     * Removes one occurrence of a key. Must only be called for keys that were added,
+     * otherwise counters shared with other keys could drop to zero.
+     */
+    void remove(long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            adjust(cell(hash, i), -1);
+        }
+        approximateSize.decrementAndGet();
+    }
+
+    boolean mightContain(long hash) {
+        for (int i = 0; i < hashCount; i++) {
+            long cell = cell(hash, i);
+            if (counter(words.get((int) (cell / COUNTERS_PER_WORD)), cell) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The expected false-positive rate for the number of keys currently held.
+     */
+    double estimatedFalsePositiveRate() {
+        double keys = Math.max(0, approximateSize.get());
+        return Math.pow(1.0 - Math.exp(-hashCount * keys / cellCount), hashCount);
+    }
+
+    long approximateSize() { return approximateSize.get(); }
+    long sizeInBytes() { return (long) words.length() * Long.BYTES; }
+
+    // Kirsch-Mitzenmacher double hashing: cell_i = h1 + i * h2. The cell count is a
+    // multiple of 16, so h2 is forced odd; an even or zero step would cycle over a few cells.
+    private long cell(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long combined = h1 + (long) i * h2;
+        return Math.floorMod(combined, cellCount);
+    }
+
+    private void adjust(long cell, int delta) {
+        int index = (int) (cell / COUNTERS_PER_WORD);
+        int shift = (int) (cell % COUNTERS_PER_WORD) * BITS_PER_COUNTER;
+        while (true) {
+            long word = words.get(index);
+            long counter = (word >>> shift) & COUNTER_MASK;
+            if (counter == SATURATED || (delta < 0 && counter == 0)) {
+                return;
+            }
+            long updated = (word & ~(COUNTER_MASK << shift)) | ((counter + delta) << shift);
+            if (words.compareAndSet(index, word, updated)) {
+                return;
+            }
+        }
+    }
+
+    private static long counter(long word, long cell) {
+        return (word >>> ((int) (cell % COUNTERS_PER_WORD) * BITS_PER_COUNTER)) & COUNTER_MASK;
+    }
+
+    /**
+     * Murmur3 64-bit finalizer; spreads integer keys before they are split into h1/h2.
+     */
+    static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
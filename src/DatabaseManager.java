@@ -20,8 +20,265 @@ public class DatabaseManager {
     }
 
     private static final String DATABASE_URL = "jdbc:sqlite:token_management.db";
+    private static final String TOKEN_COLUMNS = "id, name, service, token_value, expiration_date, metadata, token_type";
     private static final java.util.logging.Logger LOGGER = java.util.logging.Logger.getLogger(DatabaseManager.class.getName());
 
+    // JDBC URL used by connect(); defaults to the on-disk token_management.db
+    private static volatile String databaseUrl = DATABASE_URL;
+
+    /**
+     * Points every subsequent connection at a different SQLite database,
+     * e.g. a temporary file used by the load generator.
+     * @param url A JDBC URL such as "jdbc:sqlite:/tmp/tokens.db".
+     * @throws IllegalArgumentException if the URL is null or not an SQLite URL.
+     */
+    public static void setDatabaseUrl(String url) {
+        if (url == null || !url.startsWith("jdbc:sqlite:")) {
+            throw new IllegalArgumentException("Database URL must start with jdbc:sqlite:");
+        }
+        databaseUrl = url;
+    }
+
+    /**
+     * @return The JDBC URL currently used by connect().
+     */
+    public static String getDatabaseUrl() {
+        return databaseUrl;
+    }
+
+    // Every write holds the read side from the moment it picks a write path until its
+    // side effects (lookup cache, mirror) are applied. Switching a write mode on or off
+    // takes the write side, so no write can observe a half-switched mode or use a
+    // coalescer, cache or mirror that is being replaced.
+    private static final java.util.concurrent.locks.ReentrantReadWriteLock WRITE_MODE_GATE =
+            new java.util.concurrent.locks.ReentrantReadWriteLock();
+
+    // Writer thread that group-commits concurrent writes; null when coalescing is off
+    private static volatile WriteCoalescer writeCoalescer;
+
+    /**
+     * Enables write coalescing: concurrent insertToken, updateToken and deleteToken
+     * calls are queued to a single writer thread that commits them together in one
+     * transaction, while each caller still receives its own result.
+     * Calling this again replaces the current coalescer with new settings.
+     * @param maxBatchSize Maximum number of writes committed in one transaction.
+     * @param maxDelayMicros How long the writer waits for more writes after the first one arrives.
+     */
+    public static void enableWriteCoalescing(int maxBatchSize, long maxDelayMicros) {
+        WRITE_MODE_GATE.writeLock().lock();
+        try {
+            WriteCoalescer previous = writeCoalescer;
+            writeCoalescer = new WriteCoalescer(maxBatchSize, maxDelayMicros);
+            if (previous != null) {
+                previous.close();
+            }
+        } finally {
+            WRITE_MODE_GATE.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Disables write coalescing. Writes already queued are committed before this returns.
+     */
+    public static void disableWriteCoalescing() {
+        WRITE_MODE_GATE.writeLock().lock();
+        try {
+            WriteCoalescer previous = writeCoalescer;
+            writeCoalescer = null;
+            if (previous != null) {
+                previous.close();
+            }
+        } finally {
+            WRITE_MODE_GATE.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return The active write coalescer (for its batch statistics), or null when coalescing is off.
+     */
+    public static WriteCoalescer getWriteCoalescer() {
+        return writeCoalescer;
+    }
+
+    // Bloom filters answering lookups for absent ids and names; null when disabled
+    private static volatile NegativeLookupCache negativeLookupCache;
+
+    /**
+     * Builds Bloom filters over all existing token ids and (service, name) keys and
+     * consults them before every getTokenById and getTokenByServiceAndName query,
+     * so lookups for deleted or unknown tokens are answered without opening a connection.
+     * The filters are kept current by this class's insert, update and delete methods.
+     * @param falsePositiveRate Target false-positive rate, between 0 and 1 (exclusive), e.g. 0.01.
+     * @throws SQLException if a database access error occurs while scanning the table.
+     */
+    public static void enableNegativeLookupCache(double falsePositiveRate) throws SQLException {
+        WRITE_MODE_GATE.writeLock().lock();
+        try {
+            negativeLookupCache = runRead(conn -> NegativeLookupCache.build(conn, falsePositiveRate));
+        } finally {
+            WRITE_MODE_GATE.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Disables the negative lookup cache; every lookup queries the database again.
+     */
+    public static void disableNegativeLookupCache() {
+        negativeLookupCache = null;
+    }
+
+    /**
+     * @return The active negative lookup cache (for its metrics), or null when disabled.
+     */
+    public static NegativeLookupCache getNegativeLookupCache() {
+        return negativeLookupCache;
+    }
+
+    // In-memory copy of the database serving reads; null when disabled
+    private static volatile InMemoryMirror inMemoryMirror;
+
+    /**
+     * Loads the database into a shared-cache in-memory SQLite instance with the backup API
+     * and serves all reads from it. With WRITE_THROUGH every write commits to disk and is then
+     * copied into memory; with PERIODIC_FLUSH writes only go to memory and the database is
+     * copied back to disk every flushIntervalMillis and when the mirror is disabled.
+     * Calling this again replaces the current mirror.
+     * While the mirror is enabled this class must be the database's only writer: a PERIODIC_FLUSH
+     * flush overwrites the whole file, including changes made by other processes or through connect().
+     * @param durability How writes are made durable.
+     * @param flushIntervalMillis Flush interval for PERIODIC_FLUSH (ignored for WRITE_THROUGH).
+     * @throws SQLException if the database cannot be loaded into memory.
+     */
+    public static void enableInMemoryMirror(InMemoryMirror.Durability durability, long flushIntervalMillis) throws SQLException {
+        // No write may commit to disk between the copy into memory and publication
+        WRITE_MODE_GATE.writeLock().lock();
+        try {
+            closeInMemoryMirror();
+            inMemoryMirror = new InMemoryMirror(databaseUrl, durability, flushIntervalMillis);
+        } finally {
+            WRITE_MODE_GATE.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Disables the in-memory mirror, flushing it to disk first in PERIODIC_FLUSH mode.
+     * @throws SQLException if the final flush fails; the mirror then stays enabled so no write is lost.
+     */
+    public static void disableInMemoryMirror() throws SQLException {
+        WRITE_MODE_GATE.writeLock().lock();
+        try {
+            closeInMemoryMirror();
+        } finally {
+            WRITE_MODE_GATE.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Disables the in-memory mirror even if its final flush fails, e.g. during cleanup when the
+     * database is about to be discarded anyway. Unflushed PERIODIC_FLUSH writes are then lost.
+     */
+    public static void discardInMemoryMirror() {
+        WRITE_MODE_GATE.writeLock().lock();
+        try {
+            InMemoryMirror previous = inMemoryMirror;
+            if (previous != null) {
+                previous.close(); // logs a failed final flush instead of throwing
+                inMemoryMirror = null;
+            }
+        } finally {
+            WRITE_MODE_GATE.writeLock().unlock();
+        }
+    }
+
+    // Caller holds the write side of WRITE_MODE_GATE, so no write is in flight during the final flush
+    private static void closeInMemoryMirror() throws SQLException {
+        InMemoryMirror previous = inMemoryMirror;
+        if (previous != null) {
+            previous.flushAndClose();
+            inMemoryMirror = null;
+        }
+    }
+
+    /**
+     * @return The active in-memory mirror, or null when disabled.
+     */
+    public static InMemoryMirror getInMemoryMirror() {
+        return inMemoryMirror;
+    }
+
+    /**
+     * Runs a read on the in-memory mirror when it is enabled, or on a fresh connection otherwise.
+     */
+    private static <T> T runRead(WriteCoalescer.Write<T> read) throws SQLException {
+        InMemoryMirror mirror = inMemoryMirror;
+        if (mirror != null) {
+            return mirror.read(read);
+        }
+        try (Connection conn = connect()) {
+            return read.apply(conn);
+        }
+    }
+
+    /**
+     * Copies rows just written to disk into the in-memory mirror, if one is enabled.
+     * The write has already committed, so a failed copy only reloads the mirror; it is never reported as a failed write.
+     */
+    private static void refreshMirror(int... ids) {
+        InMemoryMirror mirror = inMemoryMirror;
+        if (mirror != null) {
+            mirror.refreshRows(ids);
+        }
+    }
+
+    /**
+     * Runs a multi-statement write atomically. The write coalescer already runs every
+     * write in its own savepoint; otherwise an explicit transaction is used. It is begun
+     * IMMEDIATE so a write that reads first cannot deadlock upgrading its lock.
+     */
+    private static <T> T runTransaction(WriteCoalescer.Write<T> write) throws SQLException {
+        InMemoryMirror mirror = inMemoryMirror;
+        if (mirror != null && mirror.isPrimary()) {
+            return mirror.write(write);
+        }
+        WriteCoalescer coalescer = writeCoalescer;
+        if (coalescer != null) {
+            return coalescer.submit(write);
+        }
+        try (Connection conn = connect();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("BEGIN IMMEDIATE");
+            try {
+                T result = write.apply(conn);
+                stmt.execute("COMMIT");
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                stmt.execute("ROLLBACK");
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Runs a write on the in-memory mirror when it is primary, on the write coalescer when
+     * it is enabled, or on a fresh connection otherwise.
+     */
+    private static <T> T runWrite(WriteCoalescer.Write<T> write) throws SQLException {
+        InMemoryMirror mirror = inMemoryMirror;
+        if (mirror != null && mirror.isPrimary()) {
+            // There is no fsync to amortize, so coalescing is skipped
+            return mirror.write(write);
+        }
+        WriteCoalescer coalescer = writeCoalescer;
+        if (coalescer != null) {
+            // Queue the write to the writer thread; it commits with other concurrent writes
+            return coalescer.submit(write);
+        }
+        // Use try-with-resources for Connection
+        try (Connection conn = connect()) {
+            return write.apply(conn);
+        }
+    }
+
     /**
      * Establishes a connection to the SQLite database.
      * Handles loading the driver (though often automatic) and connecting.
@@ -36,7 +293,7 @@ public class DatabaseManager {
              // Wrap in SQLException as it's related to database connectivity
             throw new SQLException("SQLite JDBC driver not found.", e);
         }
-        return DriverManager.getConnection(DATABASE_URL);
+        return DriverManager.getConnection(databaseUrl);
     }
 
     /**
@@ -58,6 +315,9 @@ public class DatabaseManager {
         try (Connection conn = connect();
             Statement stmt = conn.createStatement()) {
             stmt.execute(sql);
+            createServiceNameIndex(stmt);
+            // Supports expiration_date range scans (expired tokens, refresh scheduling)
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_tokens_expiration_date ON tokens(expiration_date)");
             System.out.println("Table 'tokens' checked/created successfully."); // Using System.out for now
         } catch (SQLException e) {
              LOGGER.log(java.util.logging.Level.SEVERE, "Error creating table", e);
@@ -65,6 +325,56 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Creates the unique (service, name) index used by lookups and upserts.
+     * A NULL service is indexed as '', so at most one token without a service may share a name.
+     * If existing rows already violate uniqueness the index is not created and a warning
+     * is logged; call removeDuplicateTokens() to resolve the duplicates.
+     */
+    private static void createServiceNameIndex(Statement stmt) throws SQLException {
+        try {
+            stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_tokens_service_name_unique ON tokens(IFNULL(service, ''), name)");
+        } catch (SQLException e) {
+            LOGGER.warning("Could not create unique (service, name) index; existing tokens contain duplicates. "
+                    + "Upserts are unavailable until DatabaseManager.removeDuplicateTokens() is run: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes duplicate tokens, keeping the most recently inserted row (highest ID) for
+     * each (service, name), then creates the unique (service, name) index.
+     * Intended as a one-off migration for databases created before the constraint existed;
+     * it deletes stored tokens, and a token with a NULL service and one with an empty
+     * service count as the same key, so it is never run implicitly.
+     * @return The number of rows deleted.
+     * @throws SQLException if a database access error occurs.
+     */
+    public static int removeDuplicateTokens() throws SQLException {
+        String sql = "DELETE FROM tokens WHERE id NOT IN (SELECT MAX(id) FROM tokens GROUP BY IFNULL(service, ''), name)";
+
+        WRITE_MODE_GATE.readLock().lock();
+        try {
+            int rowsDeleted = runWrite(conn -> {
+                try (Statement stmt = conn.createStatement()) {
+                    int deleted = stmt.executeUpdate(sql);
+                    createServiceNameIndex(stmt);
+                    return deleted;
+                }
+            });
+            InMemoryMirror mirror = inMemoryMirror;
+            if (mirror != null) {
+                mirror.reload(); // Bulk change on disk; copy the whole database again
+            }
+            System.out.println("Removed " + rowsDeleted + " duplicate token(s).");
+            return rowsDeleted;
+        } catch (SQLException e) {
+            System.err.println("Error removing duplicate tokens: " + e.getMessage());
+            throw e;
+        } finally {
+            WRITE_MODE_GATE.readLock().unlock();
+        }
+    }
+
     /**
      * Inserts a new TokenEntry into the database.
      * Because TokenEntry is immutable and ID is auto-generated, this method
@@ -75,53 +385,85 @@ public class DatabaseManager {
      * @throws GeneralSecurityException if a cryptographic error occurs (e.g., during decryption for creating the returned object).
      */
     public static TokenEntry insertToken(TokenEntry token, javax.crypto.SecretKey decryptionKeyForReturn) throws SQLException, GeneralSecurityException {
-        String sql = "INSERT INTO tokens(name, service, token_value, expiration_date, metadata, token_type) VALUES(?,?,?,?,?,?)";
-        TokenEntry insertedToken = null;
-
-        // Use try-with-resources for Connection and PreparedStatement
-        try (Connection conn = connect();
-             // Request generated keys when preparing the statement
-            PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        TokenEntry insertedToken;
 
-            pstmt.setString(1, token.getName());
-            // Set nullable fields cautiously
-            if (token.getService() != null) {
-                pstmt.setString(2, token.getService());
+        WRITE_MODE_GATE.readLock().lock();
+        try {
+            NegativeLookupCache cache = negativeLookupCache;
+            if (cache == null) {
+                insertedToken = runWrite(conn -> executeInsert(conn, token));
             } else {
-                pstmt.setNull(2, java.sql.Types.VARCHAR);
+                // Add the keys before the row can commit so lookups never reject it
+                cache.addName(token.getService(), token.getName());
+                int[] addedId = new int[1];
+                try {
+                    insertedToken = runWrite(conn -> {
+                        TokenEntry inserted = executeInsert(conn, token);
+                        if (inserted != null) {
+                            cache.addId(inserted.getId());
+                            addedId[0] = inserted.getId();
+                        }
+                        return inserted;
+                    });
+                } catch (SQLException | RuntimeException e) {
+                    cache.removeName(token.getService(), token.getName());
+                    if (addedId[0] != 0) {
+                        cache.removeId(addedId[0]);
+                    }
+                    throw e;
+                }
+                if (insertedToken == null) {
+                    cache.removeName(token.getService(), token.getName());
+                }
             }
-
-            pstmt.setString(3, token.getEncryptedTokenWithIV()); // Store the encrypted value
-
-            if (token.getExpirationDate() != null) {
-                pstmt.setLong(4, token.getExpirationDate().getEpochSecond());
-            } else {
-                pstmt.setNull(4, java.sql.Types.INTEGER);
+            if (insertedToken != null) {
+                refreshMirror(insertedToken.getId());
             }
 
-            if (token.getMetadataJson() != null) {
-                pstmt.setString(5, token.getMetadataJson());
+            if (insertedToken != null) {
+                System.out.println("A new token was inserted successfully.");
             } else {
-                pstmt.setNull(5, java.sql.Types.VARCHAR);
+                LOGGER.severe("Insert operation did not affect any rows.");
+                System.err.println("Insert operation did not affect any rows.");
             }
 
-            pstmt.setString(6, token.getTokenType()); // token_type is NOT NULL
+        } catch (SQLException e) {
+            System.err.println("Error inserting token: " + e.getMessage());
+            throw e; // Re-throw the exception
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid data provided for insertion: " + e.getMessage());
+             // Could throw a custom exception here as well
+             throw e; // Re-throw the exception
+        } finally {
+            WRITE_MODE_GATE.readLock().unlock();
+        }
+        return insertedToken; // Returns the new object with ID or null
+    }
+
+    /**
+     * Runs the INSERT for a token on the given connection.
+     * Shared by the direct path and the write coalescer's batched transactions.
+     * @param conn The connection to use; it is not closed.
+     * @param token The TokenEntry object to insert (ID is ignored).
+     * @return A new TokenEntry object with the generated ID, or null if no row was inserted.
+     * @throws SQLException if a database access error occurs.
+     */
+    static TokenEntry executeInsert(Connection conn, TokenEntry token) throws SQLException {
+        String sql = "INSERT INTO tokens(name, service, token_value, expiration_date, metadata, token_type) VALUES(?,?,?,?,?,?)";
 
-            int rowsAffected = pstmt.executeUpdate();
+        // Request generated keys when preparing the statement
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            bindTokenColumns(pstmt, token);
 
-            if (rowsAffected > 0) {
-                System.out.println("A new token was inserted successfully.");
+            if (pstmt.executeUpdate() > 0) {
                  // Retrieve the generated ID
                 try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         int generatedId = generatedKeys.getInt(1);
 
-                         // Construct a new TokenEntry object with the generated ID
-                         // We need the decryption key here to potentially decrypt
-                         // if we were to reconstruct the object fully, but for
-                         // an immutable object loaded from DB, we can use the
-                         // constructor that takes the encrypted value.
-                        insertedToken = new TokenEntry(
+                         // Construct a new TokenEntry object with the generated ID,
+                         // reusing the encrypted value that was just stored.
+                        return new TokenEntry(
                             generatedId,
                             token.getName(),
                              token.getService(), // Pass original values (which might be null)
@@ -132,21 +474,177 @@ public class DatabaseManager {
                         );
                     }
                 }
-                LOGGER.severe("Insert operation did not affect any rows.");
-                System.err.println("Insert operation did not affect any rows.");
             }
+        }
+        return null;
+    }
+
+    /**
+     * Binds name, service, token_value, expiration_date, metadata and token_type
+     * to parameters 1-6 of an INSERT or UPDATE statement.
+     */
+    private static void bindTokenColumns(PreparedStatement pstmt, TokenEntry token) throws SQLException {
+        pstmt.setString(1, token.getName());
+        // Set nullable fields cautiously
+        if (token.getService() != null) {
+            pstmt.setString(2, token.getService());
+        } else {
+            pstmt.setNull(2, java.sql.Types.VARCHAR);
+        }
+
+        pstmt.setString(3, token.getEncryptedTokenWithIV()); // Store the encrypted value
+
+        if (token.getExpirationDate() != null) {
+            pstmt.setLong(4, token.getExpirationDate().getEpochSecond());
+        } else {
+            pstmt.setNull(4, java.sql.Types.INTEGER);
+        }
+
+        if (token.getMetadataJson() != null) {
+            pstmt.setString(5, token.getMetadataJson());
+        } else {
+            pstmt.setNull(5, java.sql.Types.VARCHAR);
+        }
+
+        pstmt.setString(6, token.getTokenType()); // token_type is NOT NULL
+    }
+
+
+    /**
+     * Inserts a token, or updates the existing token with the same service and name,
+     * in a single INSERT ... ON CONFLICT DO UPDATE ... RETURNING statement.
+     * Concurrent refreshers of the same credential therefore cannot create duplicates.
+     * @param token The TokenEntry object to write (ID is ignored).
+     * @return The resulting TokenEntry with its ID, as stored in the database.
+     * @throws SQLException if a database access error occurs, or the unique (service, name)
+     *                      index is missing (see removeDuplicateTokens()).
+     * @throws GeneralSecurityException if the stored row cannot be turned into a TokenEntry.
+     */
+    public static TokenEntry upsertToken(TokenEntry token) throws SQLException, GeneralSecurityException {
+        List<TokenEntry> upserted = upsertTokens(java.util.Collections.singletonList(token));
+        return upserted.get(0);
+    }
+
+    /**
+     * Upserts a batch of tokens in one transaction, reusing one prepared statement.
+     * Either every token is written or, on error, none are.
+     * @param tokens The TokenEntry objects to write (IDs are ignored).
+     * @return The resulting TokenEntry objects with their IDs, in the same order as the input.
+     * @throws SQLException if a database access error occurs.
+     * @throws GeneralSecurityException if a stored row cannot be turned into a TokenEntry.
+     */
+    public static List<TokenEntry> upsertTokens(List<TokenEntry> tokens) throws SQLException, GeneralSecurityException {
+        if (tokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<UpsertResult> results;
 
+        WRITE_MODE_GATE.readLock().lock();
+        try {
+            NegativeLookupCache cache = negativeLookupCache;
+            if (cache == null) {
+                results = runTransaction(conn -> executeUpserts(conn, tokens));
+            } else {
+                // Add every key before the rows can commit; keys of rows that turn out to be updates are removed again below
+                for (TokenEntry token : tokens) {
+                    cache.addName(token.getService(), token.getName());
+                }
+                List<Integer> addedIds = new ArrayList<>();
+                try {
+                    results = runTransaction(conn -> {
+                        List<UpsertResult> written = executeUpserts(conn, tokens);
+                        for (UpsertResult result : written) {
+                            if (result.inserted) {
+                                cache.addId(result.token.getId());
+                                addedIds.add(result.token.getId());
+                            }
+                        }
+                        return written;
+                    });
+                } catch (SQLException | RuntimeException e) {
+                    for (TokenEntry token : tokens) {
+                        cache.removeName(token.getService(), token.getName());
+                    }
+                    addedIds.forEach(cache::removeId);
+                    throw e;
+                }
+                for (int i = 0; i < results.size(); i++) {
+                    // An updated row kept its id and (service, name) key, which were already present
+                    if (!results.get(i).inserted) {
+                        cache.removeName(tokens.get(i).getService(), tokens.get(i).getName());
+                    }
+                }
+            }
+            List<TokenEntry> upserted = new ArrayList<>(results.size());
+            int[] ids = new int[results.size()];
+            for (UpsertResult result : results) {
+                ids[upserted.size()] = result.token.getId();
+                upserted.add(result.token);
+            }
+            refreshMirror(ids);
+            System.out.println(upserted.size() + " token(s) upserted successfully.");
+            return upserted;
         } catch (SQLException e) {
-            System.err.println("Error inserting token: " + e.getMessage());
-            throw e; // Re-throw the exception
+            System.err.println("Error upserting tokens: " + e.getMessage());
+            throw e;
         } catch (IllegalArgumentException e) {
-            System.err.println("Invalid data provided for insertion: " + e.getMessage());
-             // Could throw a custom exception here as well
-             throw e; // Re-throw the exception
+            System.err.println("Error creating TokenEntry from database data: " + e.getMessage());
+            throw new GeneralSecurityException("Data integrity issue when creating TokenEntry.", e);
+        } finally {
+            WRITE_MODE_GATE.readLock().unlock();
         }
-        return insertedToken; // Returns the new object with ID or null
     }
 
+    /**
+     * The row written by an upsert and whether it was inserted (rather than updated).
+     */
+    private static final class UpsertResult {
+        final TokenEntry token;
+        final boolean inserted;
+
+        UpsertResult(TokenEntry token, boolean inserted) {
+            this.token = token;
+            this.inserted = inserted;
+        }
+    }
+
+    /**
+     * Runs the upsert statement for each token on the given connection.
+     * @param conn The connection to use; it is not closed and its transaction is left to the caller.
+     * @throws SQLException if a database access error occurs.
+     */
+    private static List<UpsertResult> executeUpserts(Connection conn, List<TokenEntry> tokens) throws SQLException {
+        String sql = "INSERT INTO tokens(name, service, token_value, expiration_date, metadata, token_type) VALUES(?,?,?,?,?,?) " +
+                     "ON CONFLICT(IFNULL(service, ''), name) DO UPDATE SET " +
+                     "service = excluded.service, token_value = excluded.token_value, expiration_date = excluded.expiration_date, " +
+                     "metadata = excluded.metadata, token_type = excluded.token_type " +
+                     // last_insert_rowid() only changes when the row was inserted rather than updated
+                     "RETURNING " + TOKEN_COLUMNS + ", last_insert_rowid() AS last_rowid";
+        List<UpsertResult> results = new ArrayList<>(tokens.size());
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql);
+            Statement rowidStmt = conn.createStatement()) {
+            long lastRowid = lastInsertRowid(rowidStmt);
+            for (TokenEntry token : tokens) {
+                bindTokenColumns(pstmt, token);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("Upsert returned no row for token '" + token.getName() + "'.");
+                    }
+                    long rowid = rs.getLong("last_rowid");
+                    results.add(new UpsertResult(readToken(rs), rowid != lastRowid));
+                    lastRowid = rowid;
+                }
+            }
+        }
+        return results;
+    }
+
+    private static long lastInsertRowid(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
 
     /**
      * Retrieves a single TokenEntry by its ID.
@@ -157,37 +655,23 @@ public class DatabaseManager {
      * @throws GeneralSecurityException if a cryptographic error occurs during object creation (unlikely here).
      */
     public static TokenEntry getTokenById(int id) throws SQLException, GeneralSecurityException {
+        NegativeLookupCache cache = negativeLookupCache;
+        if (cache != null && !cache.mightContainId(id)) {
+            return null; // Definitely absent; skip the database
+        }
         String sql = "SELECT id, name, service, token_value, expiration_date, metadata, token_type FROM tokens WHERE id = ?";
         TokenEntry token = null;
 
-        // Use try-with-resources for Connection and PreparedStatement
-        try (Connection conn = connect();
-            PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, id);
-
-            // Use try-with-resources for ResultSet
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    int tokenId = rs.getInt("id");
-                    String name = rs.getString("name");
-                    String service = rs.getString("service"); // Can be null
-                    String encryptedTokenWithIV = rs.getString("token_value"); // This is the encrypted token
-
-                    Instant expirationDate = null;
-                    long expirationTimestamp = rs.getLong("expiration_date");
-                    if (!rs.wasNull()) { // Check if the retrieved long was NULL
-                        expirationDate = Instant.ofEpochSecond(expirationTimestamp);
+        try {
+            token = runRead(conn -> {
+                // Use try-with-resources for PreparedStatement and ResultSet
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setInt(1, id);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        return rs.next() ? readToken(rs) : null;
                     }
-
-                    String metadataJson = rs.getString("metadata"); // Can be null
-                    String tokenType = rs.getString("token_type");
-
-                    // Create the TokenEntry object with the retrieved encrypted token value
-                    token = new TokenEntry(tokenId, name, service, encryptedTokenWithIV, expirationDate, metadataJson, tokenType);
                 }
-            } // ResultSet is closed automatically
-
+            });
         } catch (SQLException e) {
             System.err.println("Error retrieving token by ID: " + e.getMessage());
             throw e; // Re-throw the exception
@@ -196,6 +680,53 @@ public class DatabaseManager {
             // Re-throw as a security exception or a more specific data integrity exception
             throw new GeneralSecurityException("Data integrity issue when creating TokenEntry.", e);
         }
+        if (cache != null) {
+            cache.recordLookupResult(token != null);
+        }
+        return token;
+    }
+
+    /**
+     * Retrieves a TokenEntry by its service and name.
+     * A null service and an empty service refer to the same token.
+     * @param service The service the token belongs to (may be null).
+     * @param name The token name.
+     * @return The TokenEntry object with encrypted token data, or null if not found.
+     * @throws SQLException if a database access error occurs.
+     * @throws GeneralSecurityException if the stored row cannot be turned into a TokenEntry.
+     */
+    public static TokenEntry getTokenByServiceAndName(String service, String name) throws SQLException, GeneralSecurityException {
+        if (name == null) {
+            throw new IllegalArgumentException("Name cannot be null.");
+        }
+        NegativeLookupCache cache = negativeLookupCache;
+        if (cache != null && !cache.mightContainName(service, name)) {
+            return null; // Definitely absent; skip the database
+        }
+        // Matches the IFNULL(service, '') expression of the unique index so it is used for the lookup
+        String sql = "SELECT " + TOKEN_COLUMNS + " FROM tokens WHERE IFNULL(service, '') = IFNULL(?, '') AND name = ? ORDER BY id LIMIT 1";
+        TokenEntry token = null;
+
+        try {
+            token = runRead(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, service);
+                    pstmt.setString(2, name);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        return rs.next() ? readToken(rs) : null;
+                    }
+                }
+            });
+        } catch (SQLException e) {
+            System.err.println("Error retrieving token by service and name: " + e.getMessage());
+            throw e;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error creating TokenEntry from database data: " + e.getMessage());
+            throw new GeneralSecurityException("Data integrity issue when creating TokenEntry.", e);
+        }
+        if (cache != null) {
+            cache.recordLookupResult(token != null);
+        }
         return token;
     }
 
@@ -208,32 +739,21 @@ public class DatabaseManager {
      */
     public static List<TokenEntry> getAllTokens() throws SQLException, GeneralSecurityException {
         String sql = "SELECT id, name, service, token_value, expiration_date, metadata, token_type FROM tokens";
-        List<TokenEntry> tokenList = new ArrayList<>();
+        List<TokenEntry> tokenList;
 
-        // Use try-with-resources for Connection, Statement, and ResultSet
-        try (Connection conn = connect();
-            Statement stmt = conn.createStatement();
-            ResultSet rs = stmt.executeQuery(sql)) {
-
-            while (rs.next()) {
-                int tokenId = rs.getInt("id");
-                String name = rs.getString("name");
-                String service = rs.getString("service");
-                String encryptedTokenWithIV = rs.getString("token_value");
-
-                Instant expirationDate = null;
-                long expirationTimestamp = rs.getLong("expiration_date");
-                if (!rs.wasNull()) {
-                    expirationDate = Instant.ofEpochSecond(expirationTimestamp);
+        try {
+            tokenList = runRead(conn -> {
+                List<TokenEntry> tokens = new ArrayList<>();
+                // Use try-with-resources for Statement and ResultSet
+                try (Statement stmt = conn.createStatement();
+                    ResultSet rs = stmt.executeQuery(sql)) {
+                    while (rs.next()) {
+                        // Create TokenEntry object with encrypted token value
+                        tokens.add(readToken(rs));
+                    }
                 }
-
-                String metadataJson = rs.getString("metadata");
-                String tokenType = rs.getString("token_type");
-
-                 // Create TokenEntry object with encrypted token value
-                TokenEntry token = new TokenEntry(tokenId, name, service, encryptedTokenWithIV, expirationDate, metadataJson, tokenType);
-                tokenList.add(token);
-            }
+                return tokens;
+            });
         } catch (SQLException e) {
             System.err.println("Error retrieving all tokens: " + e.getMessage());
             throw e;
@@ -257,46 +777,134 @@ public class DatabaseManager {
             System.err.println("Cannot update token: TokenEntry object must have a valid ID.");
             return false;
         }
-        String sql = "UPDATE tokens SET name = ?, service = ?, token_value = ?, expiration_date = ?, metadata = ?, token_type = ? WHERE id = ?";
-        int rowsAffected = 0;
+        boolean updated = false;
 
-        try (Connection conn = connect();
-            PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setString(1, token.getName());
-            if (token.getService() != null) {
-                pstmt.setString(2, token.getService());
+        WRITE_MODE_GATE.readLock().lock();
+        try {
+            NegativeLookupCache cache = negativeLookupCache;
+            if (cache == null) {
+                updated = runWrite(conn -> executeUpdate(conn, token)) > 0;
             } else {
-                pstmt.setNull(2, java.sql.Types.VARCHAR);
+                // The new key goes in before the update can commit; the replaced one comes out after
+                cache.addName(token.getService(), token.getName());
+                TokenEntry previousToken;
+                try {
+                    previousToken = runTransaction(conn -> executeUpdateReturningPrevious(conn, token));
+                } catch (SQLException | RuntimeException e) {
+                    cache.removeName(token.getService(), token.getName());
+                    throw e;
+                }
+                if (previousToken != null) {
+                    cache.removeName(previousToken.getService(), previousToken.getName());
+                } else {
+                    cache.removeName(token.getService(), token.getName());
+                }
+                updated = previousToken != null;
             }
-            pstmt.setString(3, token.getEncryptedTokenWithIV()); // Use the encrypted value from the object
-
-            if (token.getExpirationDate() != null) {
-                pstmt.setLong(4, token.getExpirationDate().getEpochSecond());
-            } else {
-                pstmt.setNull(4, java.sql.Types.INTEGER);
+            if (updated) {
+                refreshMirror(token.getId());
             }
 
-            if (token.getMetadataJson() != null) {
-                pstmt.setString(5, token.getMetadataJson());
+            if (updated) {
+                System.out.println("Token with ID " + token.getId() + " updated successfully.");
             } else {
-                pstmt.setNull(5, java.sql.Types.VARCHAR);
+                System.out.println("No token found with ID " + token.getId() + " for update.");
             }
 
-            pstmt.setString(6, token.getTokenType());
+        } catch (SQLException e) {
+            System.err.println("Error updating token: " + e.getMessage());
+            throw e;
+        } finally {
+            WRITE_MODE_GATE.readLock().unlock();
+        }
+        return updated;
+    }
+
+    /**
+     * Runs the UPDATE for a token on the given connection.
+     * @param conn The connection to use; it is not closed.
+     * @param token The TokenEntry object with updated data and a valid ID.
+     * @return The number of rows affected.
+     * @throws SQLException if a database access error occurs.
+     */
+    static int executeUpdate(Connection conn, TokenEntry token) throws SQLException {
+        String sql = "UPDATE tokens SET name = ?, service = ?, token_value = ?, expiration_date = ?, metadata = ?, token_type = ? WHERE id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            bindTokenColumns(pstmt, token);
             pstmt.setInt(7, token.getId()); // Set the ID for the WHERE clause
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs the UPDATE for a token, reading the row it replaces first so the negative lookup
+     * cache can retire the old (service, name) key. Must run inside a transaction so the row
+     * cannot change between the two statements.
+     * @param conn The connection to use; it is not closed.
+     * @param token The TokenEntry object with updated data and a valid ID.
+     * @return The row as it was before the update, or null if no token has that ID.
+     * @throws SQLException if a database access error occurs.
+     */
+    static TokenEntry executeUpdateReturningPrevious(Connection conn, TokenEntry token) throws SQLException {
+        TokenEntry previousToken;
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT " + TOKEN_COLUMNS + " FROM tokens WHERE id = ?")) {
+            pstmt.setInt(1, token.getId());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                previousToken = readToken(rs);
+            }
+        }
+
+        executeUpdate(conn, token);
+        return previousToken;
+    }
 
-            rowsAffected = pstmt.executeUpdate();
+    /**
+     * Replaces a token's value and expiration date, but only if its stored value is still the
+     * one the caller read. Every other column is left untouched, so a refresh based on an older
+     * read cannot overwrite a newer value, a metadata edit or another refresh of the same token.
+     * @param id The ID of the token to update.
+     * @param expectedEncryptedValue The encrypted token value the caller read and is replacing.
+     * @param newEncryptedValue The new encrypted token value.
+     * @param newExpirationDate The new expiration date (may be null).
+     * @return true if the token was updated, false if it was deleted or its value changed since it was read.
+     * @throws SQLException if a database access error occurs.
+     */
+    public static boolean updateTokenValue(int id, String expectedEncryptedValue, String newEncryptedValue,
+                                           Instant newExpirationDate) throws SQLException {
+        if (expectedEncryptedValue == null || newEncryptedValue == null) {
+            throw new IllegalArgumentException("Token values cannot be null.");
+        }
+        String sql = "UPDATE tokens SET token_value = ?, expiration_date = ? WHERE id = ? AND token_value = ?";
+        int rowsAffected = 0;
 
+        WRITE_MODE_GATE.readLock().lock();
+        try {
+            rowsAffected = runWrite(conn -> {
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setString(1, newEncryptedValue);
+                    if (newExpirationDate != null) {
+                        pstmt.setLong(2, newExpirationDate.getEpochSecond());
+                    } else {
+                        pstmt.setNull(2, java.sql.Types.INTEGER);
+                    }
+                    pstmt.setInt(3, id);
+                    pstmt.setString(4, expectedEncryptedValue);
+                    return pstmt.executeUpdate();
+                }
+            });
+            // id, service and name are unchanged, so the negative lookup cache needs no update
             if (rowsAffected > 0) {
-                System.out.println("Token with ID " + token.getId() + " updated successfully.");
-            } else {
-                System.out.println("No token found with ID " + token.getId() + " for update.");
+                refreshMirror(id);
             }
-
         } catch (SQLException e) {
-            System.err.println("Error updating token: " + e.getMessage());
+            System.err.println("Error updating token value: " + e.getMessage());
             throw e;
+        } finally {
+            WRITE_MODE_GATE.readLock().unlock();
         }
         return rowsAffected > 0;
     }
@@ -308,17 +916,20 @@ public class DatabaseManager {
      * @throws SQLException if a database access error occurs.
      */
     public static boolean deleteToken(int id) throws SQLException {
-        String sql = "DELETE FROM tokens WHERE id = ?";
-        int rowsAffected = 0;
+        TokenEntry deletedToken = null;
 
-        try (Connection conn = connect();
-            PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setInt(1, id);
-
-            rowsAffected = pstmt.executeUpdate();
+        WRITE_MODE_GATE.readLock().lock();
+        try {
+            deletedToken = runWrite(conn -> executeDelete(conn, id));
+            NegativeLookupCache cache = negativeLookupCache;
+            if (cache != null && deletedToken != null) {
+                cache.recordDelete(deletedToken);
+            }
+            if (deletedToken != null) {
+                refreshMirror(id);
+            }
 
-            if (rowsAffected > 0) {
+            if (deletedToken != null) {
                 System.out.println("Token with ID " + id + " deleted successfully.");
             } else {
                 System.out.println("No token found with ID " + id + " for deletion.");
@@ -327,8 +938,80 @@ public class DatabaseManager {
         } catch (SQLException e) {
             System.err.println("Error deleting token: " + e.getMessage());
             throw e;
+        } finally {
+            WRITE_MODE_GATE.readLock().unlock();
+        }
+        return deletedToken != null;
+    }
+
+    /**
+     * Runs the DELETE for a token ID on the given connection.
+     * @param conn The connection to use; it is not closed.
+     * @param id The ID of the token to delete.
+     * @return The deleted row (used to keep the negative lookup cache exact), or null if none matched.
+     * @throws SQLException if a database access error occurs.
+     */
+    static TokenEntry executeDelete(Connection conn, int id) throws SQLException {
+        String sql = "DELETE FROM tokens WHERE id = ? RETURNING " + TOKEN_COLUMNS;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? readToken(rs) : null;
+            }
         }
-        return rowsAffected > 0;
+    }
+
+    /**
+     * Maps the current row of a result set selecting TOKEN_COLUMNS to a TokenEntry.
+     * @throws SQLException if a database access error occurs.
+     * @throws IllegalArgumentException if a NOT NULL column unexpectedly holds NULL.
+     */
+    private static TokenEntry readToken(ResultSet rs) throws SQLException {
+        Instant expirationDate = null;
+        long expirationTimestamp = rs.getLong("expiration_date");
+        if (!rs.wasNull()) {
+            expirationDate = Instant.ofEpochSecond(expirationTimestamp);
+        }
+        return new TokenEntry(rs.getInt("id"), rs.getString("name"), rs.getString("service"),
+                rs.getString("token_value"), expirationDate, rs.getString("metadata"), rs.getString("token_type"));
+    }
+
+    /**
+     * Retrieves tokens whose expiration_date falls within [from, to), soonest first.
+     * Used to find tokens nearing expiry so they can be refreshed ahead of time.
+     * @param from Inclusive lower bound of the expiration date.
+     * @param to Exclusive upper bound of the expiration date.
+     * @return A List of matching TokenEntry objects, or an empty list.
+     * @throws SQLException if a database access error occurs.
+     * @throws GeneralSecurityException if a stored row cannot be turned into a TokenEntry.
+     */
+    public static List<TokenEntry> getTokensExpiringBetween(Instant from, Instant to) throws SQLException, GeneralSecurityException {
+        String sql = "SELECT " + TOKEN_COLUMNS + " FROM tokens WHERE expiration_date >= ? AND expiration_date < ? ORDER BY expiration_date";
+        List<TokenEntry> tokenList;
+
+        try {
+            tokenList = runRead(conn -> {
+                List<TokenEntry> tokens = new ArrayList<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setLong(1, from.getEpochSecond());
+                    pstmt.setLong(2, to.getEpochSecond());
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            tokens.add(readToken(rs));
+                        }
+                    }
+                }
+                return tokens;
+            });
+        } catch (SQLException e) {
+            System.err.println("Error retrieving tokens by expiration range: " + e.getMessage());
+            throw e;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error creating TokenEntry from database data: " + e.getMessage());
+            throw new GeneralSecurityException("Data integrity issue when creating TokenEntry.", e);
+        }
+        return tokenList;
     }
 
     /**
@@ -341,30 +1024,23 @@ public class DatabaseManager {
       */
     public static List<TokenEntry> getExpiredTokens() throws SQLException, GeneralSecurityException {
         String sql = "SELECT id, name, service, token_value, expiration_date, metadata, token_type FROM tokens WHERE expiration_date IS NOT NULL AND expiration_date < ?";
-        List<TokenEntry> expiredTokenList = new ArrayList<>();
+        List<TokenEntry> expiredTokenList;
         long currentTimestamp = Instant.now().getEpochSecond(); // Get current Unix timestamp
 
-        try (Connection conn = connect();
-                PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            pstmt.setLong(1, currentTimestamp);
-
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                        int tokenId = rs.getInt("id");
-                        String name = rs.getString("name");
-                        String service = rs.getString("service");
-                        String encryptedTokenWithIV = rs.getString("token_value");
-                        // We know expiration_date is NOT NULL here due to the WHERE clause
-                        Instant expirationDate = Instant.ofEpochSecond(rs.getLong("expiration_date"));
-                        String metadataJson = rs.getString("metadata");
-                        String tokenType = rs.getString("token_type");
-
-                        // Create TokenEntry object with encrypted token value
-                        TokenEntry token = new TokenEntry(tokenId, name, service, encryptedTokenWithIV, expirationDate, metadataJson, tokenType);
-                        expiredTokenList.add(token);
+        try {
+            expiredTokenList = runRead(conn -> {
+                List<TokenEntry> tokens = new ArrayList<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    pstmt.setLong(1, currentTimestamp);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            // Create TokenEntry object with encrypted token value
+                            tokens.add(readToken(rs));
+                        }
+                    }
                 }
-            }
+                return tokens;
+            });
         } catch (SQLException e) {
             System.err.println("Error retrieving expired tokens: " + e.getMessage());
             throw e;
@@ -0,0 +1,82 @@
+package src;
+
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local TokenRefresher for tests and load runs; it never leaves the process.
+ * Issues random token values with a fixed lifetime after an optional simulated
+ * latency, fails a configurable share of calls, and records call counts and the
+ * highest number of concurrent calls so concurrency and rate limits can be checked.
+ */
+public class FakeTokenRefresher implements TokenRefresher {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Duration lifetime;
+    private final long latencyMillis;
+    private final double failureRate;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final ConcurrentHashMap<String, LongAdder> callsPerService = new ConcurrentHashMap<>();
+
+    /**
+     * @param lifetime Lifetime of every issued token.
+     * @param latencyMillis Simulated round-trip time of each refresh call.
+     * @param failureRate Share of calls, between 0 and 1, that throw instead of refreshing.
+     */
+    public FakeTokenRefresher(Duration lifetime, long latencyMillis, double failureRate) {
+        if (lifetime == null || lifetime.isNegative() || latencyMillis < 0 || failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("Invalid fake refresher settings");
+        }
+        this.lifetime = lifetime;
+        this.latencyMillis = latencyMillis;
+        this.failureRate = failureRate;
+    }
+
+    @Override
+    public RefreshedToken refresh(TokenEntry token, String currentTokenValue) throws Exception {
+        calls.increment();
+        callsPerService.computeIfAbsent(token.getService() == null ? "" : token.getService(), s -> new LongAdder()).increment();
+        int concurrent = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(concurrent, Math::max);
+        try {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+                failures.increment();
+                throw new IllegalStateException("Simulated refresh failure for token " + token.getId());
+            }
+            byte[] value = new byte[32];
+            RANDOM.nextBytes(value);
+            return new RefreshedToken(Base64.getUrlEncoder().withoutPadding().encodeToString(value),
+                    Instant.now().plus(lifetime));
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public long getCalls() { return calls.sum(); }
+    public long getFailures() { return failures.sum(); }
+    public int getMaxConcurrentCalls() { return maxInFlight.get(); }
+
+    /**
+     * @param service The service name (null for tokens without a service).
+     * @return How many refresh calls were made for tokens of that service.
+     */
+    public long getCalls(String service) {
+        LongAdder count = callsPerService.get(service == null ? "" : service);
+        return count == null ? 0 : count.sum();
+    }
+}
@@ -0,0 +1,373 @@
+package src;
+
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shared-cache in-memory copy of the token database for read-heavy deployments.
+ * The on-disk database is loaded with SQLite's backup API ("restore from") when
+ * the mirror is created and every read is served from memory afterwards.
+ *
+ * How writes reach both copies depends on the durability mode:
+ * WRITE_THROUGH keeps the disk database primary. After each committed write the
+ * touched rows are re-read from disk and copied into memory before the call
+ * returns, so nothing acknowledged can be lost.
+ * PERIODIC_FLUSH makes memory primary. Writes only touch the in-memory database
+ * and a background thread copies it to disk ("backup to") every flush interval,
+ * so a crash loses at most one interval of writes.
+ *
+ * Both modes assume this process is the only writer of the database file while
+ * the mirror is enabled. WRITE_THROUGH does not see rows written by others until
+ * reload(). PERIODIC_FLUSH is stricter: every flush replaces the whole file, so a
+ * change made outside the mirror (another process, or a direct connect() from
+ * this one) is silently overwritten at the next flush.
+ *
+ * Shared-cache connections fail with SQLITE_LOCKED rather than waiting, so the
+ * in-memory database is guarded by a read-write lock instead: reads hold the read
+ * side for the whole query, and writes, refreshes and reloads hold the write side
+ * on the single writer connection. Readers therefore never see a transaction that
+ * is still open or is later rolled back.
+ *
+ * If a WRITE_THROUGH refresh fails, the mirror is marked stale and reads go to
+ * disk until a later refresh has reloaded it completely.
+ */
+public final class InMemoryMirror implements AutoCloseable {
+
+    /**
+     * How writes are made durable while the mirror is enabled.
+     */
+    public enum Durability {
+        /** Writes commit to disk first and are then copied into memory. */
+        WRITE_THROUGH,
+        /** Writes go to memory only; memory is copied to disk periodically and on close. */
+        PERIODIC_FLUSH
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(InMemoryMirror.class.getName());
+    private static final AtomicInteger MIRROR_COUNT = new AtomicInteger();
+
+    private final Durability durability;
+    private final String diskUrl;
+    private final String diskPath;
+    private final String memoryUrl;
+    // Keeps the shared in-memory database alive and is the only connection that writes to it
+    private final Connection writer;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes flushes, which share the writer connection but only need the read side
+    private final Object flushMonitor = new Object();
+    private final ScheduledExecutorService flusher;
+    // Set when memory may be missing committed disk writes; reads use disk until reloaded
+    private volatile boolean stale;
+    private volatile boolean closed;
+
+    /**
+     * Loads the database at diskUrl into a new in-memory database.
+     * @param diskUrl JDBC URL of the on-disk database.
+     * @param durability How writes are made durable.
+     * @param flushIntervalMillis Flush interval for PERIODIC_FLUSH (ignored for WRITE_THROUGH).
+     * @throws SQLException if the database cannot be loaded.
+     * @throws IllegalArgumentException if diskUrl does not point at a database file.
+     */
+    InMemoryMirror(String diskUrl, Durability durability, long flushIntervalMillis) throws SQLException {
+        if (durability == Durability.PERIODIC_FLUSH && flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("flushIntervalMillis must be positive for PERIODIC_FLUSH");
+        }
+        this.durability = durability;
+        this.diskUrl = diskUrl;
+        this.diskPath = databaseFilePath(diskUrl);
+        this.memoryUrl = "jdbc:sqlite:file:tokenmirror" + MIRROR_COUNT.incrementAndGet() + "?mode=memory&cache=shared";
+        this.writer = DriverManager.getConnection(memoryUrl);
+        try (Statement stmt = writer.createStatement()) {
+            stmt.executeUpdate("restore from " + diskPath);
+        } catch (SQLException e) {
+            writer.close();
+            throw e;
+        }
+
+        if (durability == Durability.PERIODIC_FLUSH) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "token-mirror-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    public Durability getDurability() { return durability; }
+
+    /**
+     * @return true if writes should be applied to the mirror instead of the disk database.
+     */
+    boolean isPrimary() {
+        return durability == Durability.PERIODIC_FLUSH;
+    }
+
+    /**
+     * @return true if reads are currently served from disk because a refresh failed (WRITE_THROUGH).
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    /**
+     * Runs a read against the in-memory database while no write is in progress.
+     * Falls back to the disk database once the mirror is closed or while it is stale.
+     * @throws SQLException if a database access error occurs.
+     */
+    <T> T read(WriteCoalescer.Write<T> read) throws SQLException {
+        lock.readLock().lock();
+        try {
+            if (!closed && !stale) {
+                try (Connection conn = DriverManager.getConnection(memoryUrl)) {
+                    return read.apply(conn);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        try (Connection conn = DriverManager.getConnection(diskUrl)) {
+            return read.apply(conn);
+        }
+    }
+
+    /**
+     * Runs a write against the in-memory database in its own transaction (PERIODIC_FLUSH).
+     * @throws SQLException if the write fails; it is rolled back.
+     */
+    <T> T write(WriteCoalescer.Write<T> write) throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                throw new SQLException("In-memory mirror is closed.");
+            }
+            try (Statement stmt = writer.createStatement()) {
+                stmt.execute("BEGIN IMMEDIATE");
+                try {
+                    T result = write.apply(writer);
+                    stmt.execute("COMMIT");
+                    return result;
+                } catch (SQLException | RuntimeException e) {
+                    stmt.execute("ROLLBACK");
+                    throw e;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the current disk state of the given rows into memory (WRITE_THROUGH).
+     * Called after the write that touched them has committed. Rows are re-read under
+     * the write lock, so concurrent refreshes of the same row can only move it forward.
+     * The write is already durable, so a failure is logged rather than thrown: the
+     * mirror is reloaded, or marked stale if that fails too.
+     * @param ids The IDs of the rows that were inserted, updated or deleted.
+     */
+    void refreshRows(int... ids) {
+        if (isPrimary() || ids.length == 0) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (stale) {
+                reloadLocked();
+                return;
+            }
+            copyRowsLocked(ids);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Refreshing mirrored rows failed; reloading the mirror from disk", e);
+            stale = true;
+            reloadLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void copyRowsLocked(int... ids) throws SQLException {
+        String select = "SELECT id, name, service, token_value, expiration_date, metadata, token_type FROM tokens WHERE id = ?";
+        // OR REPLACE also evicts a stale row holding the same (service, name) key; it is refreshed by its own writer
+        String replace = "INSERT OR REPLACE INTO tokens(id, name, service, token_value, expiration_date, metadata, token_type) VALUES(?,?,?,?,?,?,?)";
+        String delete = "DELETE FROM tokens WHERE id = ?";
+
+        try (Connection disk = DriverManager.getConnection(diskUrl);
+            PreparedStatement selectStmt = disk.prepareStatement(select);
+            PreparedStatement replaceStmt = writer.prepareStatement(replace);
+            PreparedStatement deleteStmt = writer.prepareStatement(delete)) {
+            for (int id : ids) {
+                selectStmt.setInt(1, id);
+                try (ResultSet rs = selectStmt.executeQuery()) {
+                    if (rs.next()) {
+                        for (int column = 1; column <= 7; column++) {
+                            replaceStmt.setObject(column, rs.getObject(column));
+                        }
+                        replaceStmt.executeUpdate();
+                    } else {
+                        deleteStmt.setInt(1, id);
+                        deleteStmt.executeUpdate();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reloads the whole mirror from disk, e.g. after a bulk change made directly on disk (WRITE_THROUGH).
+     * Like refreshRows, a failure is logged and leaves the mirror stale rather than being thrown.
+     */
+    void reload() {
+        if (isPrimary()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!closed) {
+                reloadLocked();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reloadLocked() {
+        try (Statement stmt = writer.createStatement()) {
+            stmt.executeUpdate("restore from " + diskPath);
+            stale = false;
+        } catch (SQLException e) {
+            stale = true;
+            LOGGER.log(Level.SEVERE, "Reloading the in-memory mirror failed; reads use the disk database until it succeeds", e);
+        }
+    }
+
+    /**
+     * Copies the in-memory database to disk now (PERIODIC_FLUSH); a no-op for WRITE_THROUGH.
+     * Readers keep running during the copy; writers wait for it.
+     * @throws SQLException if the backup fails.
+     */
+    public void flush() throws SQLException {
+        if (!isPrimary()) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            synchronized (flushMonitor) {
+                if (!closed) {
+                    backupLocked();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes a final flush for PERIODIC_FLUSH and drops the in-memory database.
+     * Nothing is dropped if the flush fails.
+     * @throws SQLException if the final flush fails; the mirror stays open.
+     */
+    void flushAndClose() throws SQLException {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (isPrimary()) {
+                backupLocked();
+            }
+            closeLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        stopFlusher();
+    }
+
+    /**
+     * Writes a final flush for PERIODIC_FLUSH and drops the in-memory database, even if the flush fails.
+     */
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            if (isPrimary()) {
+                try {
+                    backupLocked();
+                } catch (SQLException e) {
+                    LOGGER.log(Level.SEVERE, "Final flush of the in-memory mirror failed; unflushed writes are lost", e);
+                }
+            }
+            closeLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        stopFlusher();
+    }
+
+    private void backupLocked() throws SQLException {
+        try (Statement stmt = writer.createStatement()) {
+            stmt.executeUpdate("backup to " + diskPath);
+        }
+    }
+
+    private void closeLocked() {
+        closed = true;
+        try {
+            writer.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error closing mirror connection", e);
+        }
+    }
+
+    private void stopFlusher() {
+        if (flusher != null) {
+            flusher.shutdown(); // a flush already waiting sees the mirror closed and returns
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Flushing the in-memory mirror to disk failed", e);
+        }
+    }
+
+    // "jdbc:sqlite:path?params" or "jdbc:sqlite:file:path?params" -> "path"
+    private static String databaseFilePath(String url) {
+        String path = url.substring("jdbc:sqlite:".length());
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            if (path.substring(query).contains("mode=memory")) {
+                throw new IllegalArgumentException("The database is already in memory: " + url);
+            }
+            path = path.substring(0, query);
+        }
+        if (path.startsWith("file:")) {
+            path = path.substring("file:".length());
+        }
+        if (path.isEmpty() || path.equals(":memory:") || path.chars().anyMatch(Character::isWhitespace)) {
+            throw new IllegalArgumentException("The mirror needs a database file path without whitespace: " + url);
+        }
+        return path;
+    }
+}
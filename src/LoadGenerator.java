@@ -0,0 +1,566 @@
+package src;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Multi-threaded load generator for DatabaseManager.
+ * Reproduces a skewed production mix (Zipf-distributed reads and refreshes of
+ * hot tokens, inserts of new tokens and deletes of expired ones) against a
+ * temporary SQLite database and reports throughput, latency percentiles and
+ * SQLITE_BUSY/retry counts per operation.
+ *
+ * Usage: java src.LoadGenerator [--option=value ...]
+ *   --threads=8          worker threads
+ *   --duration=30        measured run time in seconds
+ *   --warmup=5           warm-up time in seconds (not reported)
+ *   --keys=10000         number of seeded tokens forming the hot key space
+ *   --zipf=1.1           Zipf exponent for key selection (0 = uniform)
+ *   --token-size=256     plain text token length in characters
+ *   --reads=80 --inserts=10 --updates=8 --deletes=2   operation weights
+ *   --max-retries=5      retries per operation after SQLITE_BUSY/LOCKED
+ *   --busy-timeout=3000  SQLite busy_timeout in milliseconds
+ *   --journal-mode=DELETE  SQLite journal mode (e.g. WAL)
+ *   --group-commit=0     coalesce writes into batches of up to this size (0 = off)
+ *   --group-commit-window=500  microseconds the writer waits to fill a batch
+ *   --miss-reads=0       percentage of reads that look up ids which do not exist
+ *   --bloom-fpp=0        enable the negative lookup cache at this false-positive rate (0 = off)
+ *   --mirror=off         serve reads from an in-memory mirror: off, write-through or periodic
+ *   --mirror-flush=1000  flush interval in milliseconds for --mirror=periodic
+ *   --single-flight=0    read and decrypt through a SingleFlightTokenLoader whose waiters
+ *                        time out after this many milliseconds (0 = off, plain reads)
+ */
+public class LoadGenerator {
+
+    private LoadGenerator() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    private static final Logger logger = Logger.getLogger(LoadGenerator.class.getName());
+
+    // SQLite primary result codes surfaced through SQLException.getErrorCode()
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    private static final char[] TOKEN_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    enum Operation { READ, INSERT, UPDATE, DELETE }
+
+    /**
+     * Workload parameters, parsed from --option=value arguments.
+     */
+    static final class Config {
+        int threads = 8;
+        int durationSeconds = 30;
+        int warmupSeconds = 5;
+        int keys = 10_000;
+        double zipfExponent = 1.1;
+        int tokenSize = 256;
+        int readWeight = 80;
+        int insertWeight = 10;
+        int updateWeight = 8;
+        int deleteWeight = 2;
+        int maxRetries = 5;
+        int busyTimeoutMillis = 3000;
+        String journalMode = "DELETE";
+        int groupCommitBatch = 0;
+        long groupCommitWindowMicros = 500;
+        int missReadPercent = 0;
+        double bloomFalsePositiveRate = 0;
+        InMemoryMirror.Durability mirror = null;
+        long mirrorFlushMillis = 1000;
+        long singleFlightTimeoutMillis = 0;
+
+        static Config parse(String[] args) {
+            Config config = new Config();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || arg.indexOf('=') < 0) {
+                    throw new IllegalArgumentException("Expected --option=value but got: " + arg);
+                }
+                String option = arg.substring(2, arg.indexOf('='));
+                String value = arg.substring(arg.indexOf('=') + 1);
+                switch (option) {
+                    case "threads": config.threads = Integer.parseInt(value); break;
+                    case "duration": config.durationSeconds = Integer.parseInt(value); break;
+                    case "warmup": config.warmupSeconds = Integer.parseInt(value); break;
+                    case "keys": config.keys = Integer.parseInt(value); break;
+                    case "zipf": config.zipfExponent = Double.parseDouble(value); break;
+                    case "token-size": config.tokenSize = Integer.parseInt(value); break;
+                    case "reads": config.readWeight = Integer.parseInt(value); break;
+                    case "inserts": config.insertWeight = Integer.parseInt(value); break;
+                    case "updates": config.updateWeight = Integer.parseInt(value); break;
+                    case "deletes": config.deleteWeight = Integer.parseInt(value); break;
+                    case "max-retries": config.maxRetries = Integer.parseInt(value); break;
+                    case "busy-timeout": config.busyTimeoutMillis = Integer.parseInt(value); break;
+                    case "journal-mode": config.journalMode = value; break;
+                    case "group-commit": config.groupCommitBatch = Integer.parseInt(value); break;
+                    case "group-commit-window": config.groupCommitWindowMicros = Long.parseLong(value); break;
+                    case "miss-reads": config.missReadPercent = Integer.parseInt(value); break;
+                    case "bloom-fpp": config.bloomFalsePositiveRate = Double.parseDouble(value); break;
+                    case "mirror": config.mirror = parseMirror(value); break;
+                    case "mirror-flush": config.mirrorFlushMillis = Long.parseLong(value); break;
+                    case "single-flight": config.singleFlightTimeoutMillis = Long.parseLong(value); break;
+                    default: throw new IllegalArgumentException("Unknown option: --" + option);
+                }
+            }
+            if (config.threads <= 0 || config.durationSeconds <= 0 || config.keys <= 0 || config.tokenSize <= 0) {
+                throw new IllegalArgumentException("threads, duration, keys and token-size must be positive");
+            }
+            if (config.readWeight + config.insertWeight + config.updateWeight + config.deleteWeight <= 0) {
+                throw new IllegalArgumentException("At least one operation weight must be positive");
+            }
+            return config;
+        }
+
+        static InMemoryMirror.Durability parseMirror(String value) {
+            switch (value) {
+                case "off": return null;
+                case "write-through": return InMemoryMirror.Durability.WRITE_THROUGH;
+                case "periodic": return InMemoryMirror.Durability.PERIODIC_FLUSH;
+                default: throw new IllegalArgumentException("--mirror must be off, write-through or periodic");
+            }
+        }
+
+        Operation pick(ThreadLocalRandom random) {
+            int roll = random.nextInt(readWeight + insertWeight + updateWeight + deleteWeight);
+            if ((roll -= readWeight) < 0) {
+                return Operation.READ;
+            }
+            if ((roll -= insertWeight) < 0) {
+                return Operation.INSERT;
+            }
+            if (roll - updateWeight < 0) {
+                return Operation.UPDATE;
+            }
+            return Operation.DELETE;
+        }
+    }
+
+    /**
+     * Samples ranks 0..n-1 with probability proportional to 1 / (rank + 1)^s
+     * using a precomputed cumulative distribution and binary search.
+     */
+    static final class ZipfDistribution {
+        private final double[] cdf;
+
+        ZipfDistribution(int n, double exponent) {
+            cdf = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1.0 / Math.pow(i + 1, exponent);
+                cdf[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                cdf[i] /= sum;
+            }
+        }
+
+        int sample(ThreadLocalRandom random) {
+            int index = Arrays.binarySearch(cdf, random.nextDouble());
+            int rank = index >= 0 ? index : -index - 1;
+            return Math.min(rank, cdf.length - 1);
+        }
+    }
+
+    /**
+     * Per-operation counters. Latencies are collected per thread and merged
+     * once the run is over, so recording never contends between workers.
+     */
+    static final class OperationStats {
+        final LongAdder completed = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder busy = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder skipped = new LongAdder();
+        private long[] latencies = new long[0];
+
+        synchronized void mergeLatencies(long[] samples, int count) {
+            int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + count);
+            System.arraycopy(samples, 0, latencies, offset, count);
+        }
+
+        synchronized long percentileMicros(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            Arrays.sort(latencies);
+            int index = (int) Math.ceil(percentile / 100.0 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / 1_000;
+        }
+    }
+
+    /**
+     * Growable buffer of latency samples owned by a single worker thread.
+     */
+    private static final class LatencyBuffer {
+        long[] samples = new long[1024];
+        int count;
+
+        void add(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+        }
+    }
+
+    @FunctionalInterface
+    private interface DatabaseCall {
+        void run() throws SQLException, GeneralSecurityException;
+    }
+
+    /**
+     * Statistics of one run plus the optional components that were active during it.
+     */
+    static final class Result {
+        final Map<Operation, OperationStats> stats;
+        final WriteCoalescer coalescer;
+        final NegativeLookupCache lookupCache;
+        final SingleFlightTokenLoader singleFlight;
+
+        Result(Map<Operation, OperationStats> stats, WriteCoalescer coalescer, NegativeLookupCache lookupCache,
+               SingleFlightTokenLoader singleFlight) {
+            this.stats = stats;
+            this.coalescer = coalescer;
+            this.lookupCache = lookupCache;
+            this.singleFlight = singleFlight;
+        }
+    }
+
+    public static void main(String[] args) {
+        Config config;
+        try {
+            config = Config.parse(args);
+        } catch (IllegalArgumentException e) {
+            logger.log(Level.SEVERE, "Invalid arguments: {0}", e.getMessage());
+            return;
+        }
+
+        try {
+            Result result = runAgainstTempDatabase(config);
+            printReport(config, result.stats, result.coalescer, result.lookupCache, result.singleFlight);
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not create temporary database.", e);
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, e, () -> "Database error: " + e.getMessage());
+        } catch (GeneralSecurityException e) {
+            logger.log(Level.SEVERE, e, () -> "Security error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warning("Load generation interrupted.");
+        }
+    }
+
+    /**
+     * Runs the workload against a fresh temporary database, which is deleted afterwards,
+     * and restores DatabaseManager's previous URL and disables every optional mode it enabled.
+     */
+    static Result runAgainstTempDatabase(Config config)
+            throws IOException, SQLException, GeneralSecurityException, InterruptedException {
+        Path databaseFile = Files.createTempFile("tokenmanager-load-", ".db");
+        String previousUrl = DatabaseManager.getDatabaseUrl();
+        try {
+            DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + databaseFile.toAbsolutePath()
+                    + "?journal_mode=" + config.journalMode
+                    + "&busy_timeout=" + config.busyTimeoutMillis);
+
+            if (config.groupCommitBatch > 0) {
+                DatabaseManager.enableWriteCoalescing(config.groupCommitBatch, config.groupCommitWindowMicros);
+            }
+            SecretKey key = CryptoUtils.generateKey();
+            SingleFlightTokenLoader singleFlight = config.singleFlightTimeoutMillis > 0
+                    ? new SingleFlightTokenLoader(key, Duration.ofMillis(config.singleFlightTimeoutMillis))
+                    : null;
+            Map<Operation, OperationStats> stats = run(config, key, singleFlight);
+            return new Result(stats, DatabaseManager.getWriteCoalescer(), DatabaseManager.getNegativeLookupCache(), singleFlight);
+        } finally {
+            try {
+                DatabaseManager.disableInMemoryMirror();
+            } catch (SQLException e) {
+                // The temporary database is deleted below anyway; drop the mirror so the next run starts clean
+                logger.log(Level.WARNING, "Final flush of the in-memory mirror failed; discarding it.", e);
+                DatabaseManager.discardInMemoryMirror();
+            }
+            DatabaseManager.disableWriteCoalescing();
+            DatabaseManager.disableNegativeLookupCache();
+            DatabaseManager.setDatabaseUrl(previousUrl);
+            deleteDatabaseFiles(databaseFile);
+        }
+    }
+
+    /**
+     * Seeds the key space, runs the warm-up and measured phases and returns
+     * the statistics collected during the measured phase.
+     * @param singleFlight Loader that reads go through, or null for plain reads.
+     */
+    static Map<Operation, OperationStats> run(Config config, SecretKey key, SingleFlightTokenLoader singleFlight)
+            throws SQLException, GeneralSecurityException, InterruptedException {
+        ZipfDistribution zipf = new ZipfDistribution(config.keys, config.zipfExponent);
+        ConcurrentLinkedQueue<Integer> deletable = new ConcurrentLinkedQueue<>();
+
+        // DatabaseManager reports every write on System.out; silence it so
+        // console I/O does not dominate the measurements.
+        PrintStream originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            DatabaseManager.createTokensTable();
+            int[] hotIds = seed(config, key);
+            if (config.mirror != null) {
+                DatabaseManager.enableInMemoryMirror(config.mirror, config.mirrorFlushMillis);
+            }
+            if (config.bloomFalsePositiveRate > 0) {
+                DatabaseManager.enableNegativeLookupCache(config.bloomFalsePositiveRate);
+            }
+
+            if (config.warmupSeconds > 0) {
+                runPhase(config, key, singleFlight, zipf, hotIds, deletable, config.warmupSeconds, newStats());
+            }
+            Map<Operation, OperationStats> stats = newStats();
+            runPhase(config, key, singleFlight, zipf, hotIds, deletable, config.durationSeconds, stats);
+            return stats;
+        } finally {
+            System.setOut(originalOut);
+        }
+    }
+
+    private static Map<Operation, OperationStats> newStats() {
+        Map<Operation, OperationStats> stats = new HashMap<>();
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+        return stats;
+    }
+
+    private static int[] seed(Config config, SecretKey key) throws SQLException, GeneralSecurityException {
+        List<TokenEntry> tokens = new ArrayList<>(config.keys);
+        for (int i = 0; i < config.keys; i++) {
+            tokens.add(newToken("hot-" + i, config, key, Instant.now().plusSeconds(3600)));
+        }
+        // One transaction (one fsync) for the whole key space rather than one per token
+        List<TokenEntry> inserted = DatabaseManager.upsertTokens(tokens);
+        if (inserted.size() != config.keys) {
+            throw new SQLException("Seeding stored " + inserted.size() + " of " + config.keys + " tokens");
+        }
+        int[] ids = new int[config.keys];
+        for (int i = 0; i < config.keys; i++) {
+            ids[i] = inserted.get(i).getId();
+        }
+        return ids;
+    }
+
+    private static void runPhase(Config config, SecretKey key, SingleFlightTokenLoader singleFlight,
+                                 ZipfDistribution zipf, int[] hotIds,
+                                 ConcurrentLinkedQueue<Integer> deletable, int seconds,
+                                 Map<Operation, OperationStats> stats) throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[config.threads];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(() -> {
+                Map<Operation, LatencyBuffer> buffers = new HashMap<>();
+                for (Operation operation : Operation.values()) {
+                    buffers.put(operation, new LatencyBuffer());
+                }
+                try {
+                    start.await();
+                    while (System.nanoTime() < deadline) {
+                        ThreadLocalRandom random = ThreadLocalRandom.current();
+                        Operation operation = config.pick(random);
+                        executeOperation(operation, config, key, singleFlight, zipf, hotIds, deletable, random,
+                                stats.get(operation), buffers.get(operation));
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    for (Operation operation : Operation.values()) {
+                        LatencyBuffer buffer = buffers.get(operation);
+                        stats.get(operation).mergeLatencies(buffer.samples, buffer.count);
+                    }
+                }
+            }, "load-worker-" + t);
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private static void executeOperation(Operation operation, Config config, SecretKey key,
+                                         SingleFlightTokenLoader singleFlight, ZipfDistribution zipf, int[] hotIds,
+                                         ConcurrentLinkedQueue<Integer> deletable, ThreadLocalRandom random,
+                                         OperationStats stats, LatencyBuffer latencies)
+            throws InterruptedException {
+        DatabaseCall call;
+        try {
+            switch (operation) {
+                case READ: {
+                    // Negative ids are never assigned by SQLite, so they model unknown tokens
+                    int id = random.nextInt(100) < config.missReadPercent
+                            ? -1 - random.nextInt(Integer.MAX_VALUE)
+                            : hotIds[zipf.sample(random)];
+                    if (singleFlight != null) {
+                        // Load and decrypt, sharing both with concurrent reads of the same hot token
+                        call = () -> singleFlight.getDecryptedToken(id);
+                    } else {
+                        call = () -> DatabaseManager.getTokenById(id);
+                    }
+                    break;
+                }
+                case INSERT: {
+                    // Half of the inserted tokens are already expired and become delete candidates
+                    boolean expired = random.nextBoolean();
+                    TokenEntry token = newToken("new-" + random.nextLong(), config, key,
+                            expired ? Instant.now().minusSeconds(60) : Instant.now().plusSeconds(3600));
+                    call = () -> {
+                        TokenEntry inserted = DatabaseManager.insertToken(token, key);
+                        if (expired && inserted != null) {
+                            deletable.add(inserted.getId());
+                        }
+                    };
+                    break;
+                }
+                case UPDATE: {
+                    int index = zipf.sample(random);
+                    TokenEntry refreshed = new TokenEntry(hotIds[index], "hot-" + index, "LoadService",
+                            CryptoUtils.encrypt(randomToken(config.tokenSize, random), key),
+                            Instant.now().plusSeconds(3600), null, "Bearer");
+                    call = () -> DatabaseManager.updateToken(refreshed);
+                    break;
+                }
+                default: {
+                    Integer id = deletable.poll();
+                    if (id == null) {
+                        stats.skipped.increment();
+                        return;
+                    }
+                    call = () -> DatabaseManager.deleteToken(id);
+                    break;
+                }
+            }
+        } catch (GeneralSecurityException e) {
+            stats.failed.increment();
+            return;
+        }
+
+        // Time the database call only; token generation and encryption happen above
+        long startNanos = System.nanoTime();
+        for (int attempt = 0; ; attempt++) {
+            try {
+                call.run();
+                latencies.add(System.nanoTime() - startNanos);
+                stats.completed.increment();
+                return;
+            } catch (SQLException e) {
+                if (!isBusy(e)) {
+                    stats.failed.increment();
+                    return;
+                }
+                stats.busy.increment();
+                if (attempt >= config.maxRetries) {
+                    stats.failed.increment();
+                    return;
+                }
+                stats.retries.increment();
+                Thread.sleep(random.nextLong(1, 2L << Math.min(attempt, 6)));
+            } catch (GeneralSecurityException e) {
+                stats.failed.increment();
+                return;
+            }
+        }
+    }
+
+    private static boolean isBusy(SQLException e) {
+        int code = e.getErrorCode() & 0xff; // strip SQLite extended result code bits
+        return code == SQLITE_BUSY || code == SQLITE_LOCKED
+                || (e.getMessage() != null && e.getMessage().contains("SQLITE_BUSY"));
+    }
+
+    private static TokenEntry newToken(String name, Config config, SecretKey key, Instant expirationDate)
+            throws GeneralSecurityException {
+        return new TokenEntry(name, "LoadService", randomToken(config.tokenSize, ThreadLocalRandom.current()),
+                expirationDate, null, "Bearer", key);
+    }
+
+    private static String randomToken(int length, ThreadLocalRandom random) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = TOKEN_ALPHABET[random.nextInt(TOKEN_ALPHABET.length)];
+        }
+        return new String(chars);
+    }
+
+    private static void printReport(Config config, Map<Operation, OperationStats> stats,
+                                    WriteCoalescer coalescer, NegativeLookupCache lookupCache,
+                                    SingleFlightTokenLoader singleFlight) {
+        System.out.printf("threads=%d duration=%ds keys=%d zipf=%.2f token-size=%d journal=%s busy-timeout=%dms mirror=%s%n",
+                config.threads, config.durationSeconds, config.keys, config.zipfExponent,
+                config.tokenSize, config.journalMode, config.busyTimeoutMillis, config.mirror == null ? "off" : config.mirror);
+        System.out.printf("%-7s %10s %10s %9s %9s %9s %8s %8s %8s %8s%n",
+                "op", "completed", "ops/s", "p50(us)", "p99(us)", "p999(us)", "busy", "retries", "failed", "skipped");
+        long total = 0;
+        for (Operation operation : Operation.values()) {
+            OperationStats s = stats.get(operation);
+            long completed = s.completed.sum();
+            total += completed;
+            System.out.printf("%-7s %10d %10.1f %9d %9d %9d %8d %8d %8d %8d%n",
+                    operation.name().toLowerCase(), completed, (double) completed / config.durationSeconds,
+                    s.percentileMicros(50), s.percentileMicros(99), s.percentileMicros(99.9),
+                    s.busy.sum(), s.retries.sum(), s.failed.sum(), s.skipped.sum());
+        }
+        System.out.printf("total   %10d %10.1f%n", total, (double) total / config.durationSeconds);
+        if (coalescer != null) {
+            // Counters include the seeding and warm-up phases
+            long batches = coalescer.getBatchesCommitted();
+            System.out.printf("group commit: batches=%d writes=%d failed=%d avg-batch=%.1f%n",
+                    batches, coalescer.getWritesCommitted(), coalescer.getWritesFailed(),
+                    batches == 0 ? 0.0 : (double) coalescer.getWritesCommitted() / batches);
+        }
+        if (lookupCache != null) {
+            System.out.printf("negative lookup cache: size=%dKiB negative-hits=%d false-positives=%d"
+                            + " observed-fpp=%.4f estimated-fpp=%.4f configured-fpp=%.4f%n",
+                    lookupCache.getSizeInBytes() / 1024, lookupCache.getNegativeHits(),
+                    lookupCache.getFalsePositives(), lookupCache.getObservedFalsePositiveRate(),
+                    lookupCache.getEstimatedFalsePositiveRate(), lookupCache.getConfiguredFalsePositiveRate());
+        }
+        if (singleFlight != null) {
+            // Counters include the warm-up phase
+            System.out.printf("single flight: decrypt-calls=%d decrypts=%d load-calls=%d loads=%d timeouts=%d%n",
+                    singleFlight.getDecryptCalls(), singleFlight.getDecryptsExecuted(),
+                    singleFlight.getLoadCalls(), singleFlight.getLoadsExecuted(), singleFlight.getTimeouts());
+        }
+    }
+
+    static void deleteDatabaseFiles(Path databaseFile) {
+        for (String suffix : new String[] {"", "-journal", "-wal", "-shm"}) {
+            try {
+                Files.deleteIfExists(Path.of(databaseFile.toString() + suffix));
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not delete {0}", databaseFile + suffix);
+            }
+        }
+    }
+}
@@ -41,7 +41,14 @@ public class Main {
         } catch (ClassNotFoundException e) {
             logger.log(Level.SEVERE, "Error: SQLite JDBC driver not found.", e);
         } catch (SQLException e) {
-            logger.log(Level.SEVERE, e, () -> "Database error: " + e.getMessage());
+            if (isMissingUniqueIndex(e)) {
+                // Never delete stored tokens implicitly; the migration is the user's decision
+                logger.severe("The tokens table holds duplicate (service, name) rows, so the unique index that upserts need "
+                        + "could not be created. Back up the database and run DatabaseManager.removeDuplicateTokens() once; "
+                        + "it keeps only the newest row for each (service, name).");
+            } else {
+                logger.log(Level.SEVERE, e, () -> "Database error: " + e.getMessage());
+            }
         } catch (GeneralSecurityException e) {
             logger.log(Level.SEVERE, e, () -> "Security error: " + e.getMessage());
         } catch (Exception e) {
@@ -49,6 +56,11 @@ public class Main {
         }
     }
 
+    // Raised by upserts when createTokensTable could not build the unique (service, name) index
+    private static boolean isMissingUniqueIndex(SQLException e) {
+        return e.getMessage() != null && e.getMessage().contains("ON CONFLICT clause does not match");
+    }
+
     private static TokenEntry testInsertOperation(SecretKey key) throws GeneralSecurityException, SQLException {
         logger.info("\n--- Testing Insert Operation ---");
         TokenEntry newToken = new TokenEntry(
@@ -60,7 +72,8 @@ public class Main {
                 "Bearer",
                 key // Pass the encryption key
         );
-        TokenEntry insertedToken = DatabaseManager.insertToken(newToken, key); // Pass key for return object creation
+        // Upsert so re-running the demo refreshes the same (service, name) token instead of conflicting
+        TokenEntry insertedToken = DatabaseManager.upsertToken(newToken);
         if (insertedToken != null) {
             logger.log(Level.INFO, "Token stored securely in database with ID: {0}", insertedToken.getId());
         }
@@ -90,8 +103,8 @@ public class Main {
         // Create a *new* TokenEntry with updated values (immutability)
         TokenEntry tokenToUpdate = new TokenEntry(
                 retrievedToken.getId(), // Use the existing ID
-                "Updated Token Name",
-                "Updated Service",
+                retrievedToken.getName(), // Keep the (service, name) key; it is unique
+                retrievedToken.getService(),
                 retrievedToken.getEncryptedTokenWithIV(), // Keep the existing encrypted value (or re-encrypt if changing plain text)
                 Instant.now().plusSeconds(7200), // Update expiration
                 "{\"info\":\"updated metadata\"}",
@@ -130,7 +143,7 @@ public class Main {
         TokenEntry expiredToken = new TokenEntry(
                 "ExpiredTokenTest", "TestService", "exp-val", Instant.now().minusSeconds(10), null, "Test", key
         );
-        DatabaseManager.insertToken(expiredToken, key); // Insert it
+        DatabaseManager.upsertToken(expiredToken); // Insert (or refresh) it
 
         List<TokenEntry> expiredTokens = DatabaseManager.getExpiredTokens();
         logger.info("Expired Tokens:");
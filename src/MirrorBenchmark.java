@@ -0,0 +1,76 @@
+package src;
+
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compares the disk-backed read path with the in-memory mirror.
+ * Runs the same LoadGenerator workload three times, once without a mirror and once
+ * per mirror durability mode, each against its own temporary database, and prints
+ * read and write throughput and latency side by side.
+ *
+ * Usage: java src.MirrorBenchmark [LoadGenerator options]
+ * Any --mirror option is ignored; --mirror-flush sets the PERIODIC_FLUSH interval.
+ */
+public class MirrorBenchmark {
+
+    private MirrorBenchmark() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    private static final Logger logger = Logger.getLogger(MirrorBenchmark.class.getName());
+
+    public static void main(String[] args) {
+        LoadGenerator.Config config;
+        try {
+            config = LoadGenerator.Config.parse(args);
+        } catch (IllegalArgumentException e) {
+            logger.log(Level.SEVERE, "Invalid arguments: {0}", e.getMessage());
+            return;
+        }
+
+        InMemoryMirror.Durability[] modes = {null, InMemoryMirror.Durability.WRITE_THROUGH, InMemoryMirror.Durability.PERIODIC_FLUSH};
+        StringBuilder table = new StringBuilder(String.format("%-15s %10s %9s %9s %10s %9s %9s%n",
+                "mirror", "reads/s", "p50(us)", "p99(us)", "writes/s", "p50(us)", "p99(us)"));
+        try {
+            for (InMemoryMirror.Durability mode : modes) {
+                config.mirror = mode;
+                Map<LoadGenerator.Operation, LoadGenerator.OperationStats> stats =
+                        LoadGenerator.runAgainstTempDatabase(config).stats;
+                LoadGenerator.OperationStats reads = stats.get(LoadGenerator.Operation.READ);
+                LoadGenerator.OperationStats updates = stats.get(LoadGenerator.Operation.UPDATE);
+                long writes = stats.get(LoadGenerator.Operation.INSERT).completed.sum()
+                        + updates.completed.sum()
+                        + stats.get(LoadGenerator.Operation.DELETE).completed.sum();
+                // Updates (token refreshes) stand in for write latency
+                table.append(String.format("%-15s %10.1f %9d %9d %10.1f %9d %9d%n",
+                        mode == null ? "off (disk)" : mode.name().toLowerCase(),
+                        (double) reads.completed.sum() / config.durationSeconds,
+                        reads.percentileMicros(50), reads.percentileMicros(99),
+                        (double) writes / config.durationSeconds,
+                        updates.percentileMicros(50), updates.percentileMicros(99)));
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Could not create temporary database.", e);
+            return;
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, e, () -> "Database error: " + e.getMessage());
+            return;
+        } catch (GeneralSecurityException e) {
+            logger.log(Level.SEVERE, e, () -> "Security error: " + e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warning("Benchmark interrupted.");
+            return;
+        }
+        System.out.printf("threads=%d duration=%ds keys=%d zipf=%.2f mirror-flush=%dms%n",
+                config.threads, config.durationSeconds, config.keys, config.zipfExponent, config.mirrorFlushMillis);
+        System.out.print(table);
+    }
+}
@@ -0,0 +1,161 @@
+package src;
+
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Answers "this token definitely does not exist" without touching SQLite.
+ * Holds one counting Bloom filter over token ids and one over (service, name)
+ * keys. Lookups consult it first and only query the database when the filter
+ * says the key might exist.
+ *
+ * DatabaseManager keeps the filters current on every insert, update and delete
+ * it performs, using the exact keys of the rows involved. A key is added before
+ * the write that makes it visible commits, and a key is only removed after the
+ * write that retires it has committed, so the filters never reject a committed
+ * token and never remove a key that is not in them; a write that fails removes
+ * the keys it added. An update that keeps its (service, name) key adds and then
+ * removes it again, leaving the counters where they were. Rows written by other
+ * processes are not seen until the cache is rebuilt.
+ */
+public final class NegativeLookupCache {
+
+    private static final int MIN_CAPACITY = 1024;
+    // Size for growth so the configured rate still holds after the table doubles
+    private static final int GROWTH_FACTOR = 2;
+
+    private final double configuredFalsePositiveRate;
+    private final CountingBloomFilter ids;
+    private final CountingBloomFilter names;
+
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder truePositives = new LongAdder();
+
+    private NegativeLookupCache(long capacity, double falsePositiveRate) {
+        this.configuredFalsePositiveRate = falsePositiveRate;
+        this.ids = new CountingBloomFilter(capacity, falsePositiveRate);
+        this.names = new CountingBloomFilter(capacity, falsePositiveRate);
+    }
+
+    /**
+     * Builds the cache from every row currently in the tokens table.
+     * @param conn The connection to scan with; it is not closed.
+     * @param falsePositiveRate Target false-positive rate, between 0 and 1 (exclusive).
+     * @return A populated cache.
+     * @throws SQLException if a database access error occurs.
+     */
+    static NegativeLookupCache build(Connection conn, double falsePositiveRate) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            long rows;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM tokens")) {
+                rows = rs.next() ? rs.getLong(1) : 0;
+            }
+            NegativeLookupCache cache = new NegativeLookupCache(
+                    Math.max(MIN_CAPACITY, rows * GROWTH_FACTOR), falsePositiveRate);
+            try (ResultSet rs = stmt.executeQuery("SELECT id, service, name FROM tokens")) {
+                while (rs.next()) {
+                    cache.ids.add(idHash(rs.getInt(1)));
+                    cache.names.add(nameHash(rs.getString(2), rs.getString(3)));
+                }
+            }
+            return cache;
+        }
+    }
+
+    boolean mightContainId(int id) {
+        return record(ids.mightContain(idHash(id)));
+    }
+
+    boolean mightContainName(String service, String name) {
+        return record(names.mightContain(nameHash(service, name)));
+    }
+
+    /**
+     * Records whether a lookup the filter let through actually found a row.
+     */
+    void recordLookupResult(boolean found) {
+        if (found) {
+            truePositives.increment();
+        } else {
+            falsePositives.increment();
+        }
+    }
+
+    void addId(int id) {
+        ids.add(idHash(id));
+    }
+
+    /** Must only be called for an id this cache added. */
+    void removeId(int id) {
+        ids.remove(idHash(id));
+    }
+
+    void addName(String service, String name) {
+        names.add(nameHash(service, name));
+    }
+
+    /** Must only be called for a (service, name) key this cache added. */
+    void removeName(String service, String name) {
+        names.remove(nameHash(service, name));
+    }
+
+    void recordDelete(TokenEntry deleted) {
+        ids.remove(idHash(deleted.getId()));
+        names.remove(nameHash(deleted.getService(), deleted.getName()));
+    }
+
+    // --- Metrics ---
+    public double getConfiguredFalsePositiveRate() { return configuredFalsePositiveRate; }
+    /** Expected false-positive rate of the fuller of the two filters at its current fill. */
+    public double getEstimatedFalsePositiveRate() {
+        return Math.max(ids.estimatedFalsePositiveRate(), names.estimatedFalsePositiveRate());
+    }
+    /** Share of lookups for absent keys that the filters failed to reject. */
+    public double getObservedFalsePositiveRate() {
+        long fp = falsePositives.sum();
+        long absent = fp + negativeHits.sum();
+        return absent == 0 ? 0.0 : (double) fp / absent;
+    }
+    /** Lookups answered from the filters without querying the database. */
+    public long getNegativeHits() { return negativeHits.sum(); }
+    public long getFalsePositives() { return falsePositives.sum(); }
+    public long getTruePositives() { return truePositives.sum(); }
+    public long getSizeInBytes() { return ids.sizeInBytes() + names.sizeInBytes(); }
+
+    private boolean record(boolean mightContain) {
+        if (!mightContain) {
+            negativeHits.increment();
+        }
+        return mightContain;
+    }
+
+    private static long idHash(int id) {
+        return CountingBloomFilter.mix(id);
+    }
+
+    // 64-bit FNV-1a over service and name. A null service is the same key as "",
+    // matching the IFNULL(service, '') unique index on the tokens table.
+    private static long nameHash(String service, String name) {
+        long hash = 0xcbf29ce484222325L;
+        if (service != null) {
+            hash = fnv(hash, service);
+        }
+        hash = (hash ^ 0x1F) * 0x100000001b3L; // separator
+        hash = fnv(hash, name);
+        return CountingBloomFilter.mix(hash);
+    }
+
+    private static long fnv(long hash, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            hash = (hash ^ (c & 0xff)) * 0x100000001b3L;
+            hash = (hash ^ (c >>> 8)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
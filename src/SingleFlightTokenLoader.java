@@ -0,0 +1,165 @@
+package src;
+
+
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Coalesces concurrent loads and decrypts of the same token.
+ * The first caller for a token ID becomes the leader and runs the database load
+ * (and AES-GCM decrypt) on its own thread. Callers that arrive while it is in flight
+ * wait for the leader's result instead of opening their own connection, and all of
+ * them receive the same value or the same exception. Nothing is cached: once a
+ * flight completes, the next call for that ID starts a new one.
+ *
+ * Waiters give up after the configured timeout with an SQLTimeoutException; the
+ * leader itself is never timed out, since its JDBC call cannot be cancelled. A
+ * decrypt leader that joins an in-flight load of the same token waits for it
+ * without a timeout too, so a slow load never fails decrypt waiters that have
+ * only just started waiting.
+ *
+ * A caller may join a load that started before its own write committed, so
+ * reading back a token right after updating it can return the previous value.
+ * Callers that need to read their own writes should use DatabaseManager directly.
+ */
+public class SingleFlightTokenLoader {
+
+    @FunctionalInterface
+    private interface Load<V> {
+        V run() throws SQLException, GeneralSecurityException;
+    }
+
+    /**
+     * In-flight calls of one kind, keyed by token ID, with their counters.
+     */
+    private static final class Flights<V> {
+        final ConcurrentHashMap<Integer, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+        final LongAdder calls = new LongAdder();
+        final LongAdder executed = new LongAdder();
+        final LongAdder coalesced = new LongAdder();
+    }
+
+    private static final long NO_TIMEOUT = -1;
+
+    private final SecretKey key;
+    private final long timeoutNanos;
+    private final Flights<TokenEntry> loads = new Flights<>();
+    private final Flights<String> decrypts = new Flights<>();
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * @param key The key used by getDecryptedToken.
+     * @param timeout How long a waiter waits for an in-flight call before failing.
+     * @throws IllegalArgumentException if key is null or timeout is not positive.
+     */
+    public SingleFlightTokenLoader(SecretKey key, Duration timeout) {
+        if (key == null || timeout == null || timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("key cannot be null and timeout must be positive");
+        }
+        this.key = key;
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * Loads a token via DatabaseManager.getTokenById, sharing the call with concurrent callers for the same ID.
+     * @param id The ID of the token to retrieve.
+     * @return The TokenEntry object with encrypted token data, or null if not found.
+     * @throws SQLTimeoutException if this caller waited longer than the timeout for another caller's load.
+     * @throws SQLException if a database access error occurs.
+     * @throws GeneralSecurityException if the stored row cannot be turned into a TokenEntry.
+     */
+    public TokenEntry getTokenById(int id) throws SQLException, GeneralSecurityException {
+        return execute(loads, id, timeoutNanos, () -> DatabaseManager.getTokenById(id));
+    }
+
+    /**
+     * Loads and decrypts a token, sharing the load and decrypt with concurrent callers for the same ID.
+     * @param id The ID of the token to retrieve.
+     * @return The plain text token value, or null if the token does not exist.
+     * @throws SQLTimeoutException if this caller waited longer than the timeout for another caller's call.
+     * @throws SQLException if a database access error occurs.
+     * @throws GeneralSecurityException if decryption fails (e.g., incorrect key, tampered data).
+     */
+    public String getDecryptedToken(int id) throws SQLException, GeneralSecurityException {
+        return execute(decrypts, id, timeoutNanos, () -> {
+            // Also coalesces with plain loads; as a leader it waits for the load without a timeout
+            TokenEntry token = execute(loads, id, NO_TIMEOUT, () -> DatabaseManager.getTokenById(id));
+            return token == null ? null : token.getDecryptedToken(key);
+        });
+    }
+
+    // --- Metrics ---
+    public long getLoadCalls() { return loads.calls.sum(); }
+    /** Database loads actually run; getLoadCalls() - getLoadsExecuted() calls were coalesced. */
+    public long getLoadsExecuted() { return loads.executed.sum(); }
+    public long getLoadsCoalesced() { return loads.coalesced.sum(); }
+    public long getDecryptCalls() { return decrypts.calls.sum(); }
+    public long getDecryptsExecuted() { return decrypts.executed.sum(); }
+    public long getDecryptsCoalesced() { return decrypts.coalesced.sum(); }
+    /** Waiters that gave up on an in-flight call. */
+    public long getTimeouts() { return timeouts.sum(); }
+
+    private <V> V execute(Flights<V> flights, int id, long waitNanos, Load<V> load) throws SQLException, GeneralSecurityException {
+        flights.calls.increment();
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.inFlight.putIfAbsent(id, flight);
+        if (existing != null) {
+            flights.coalesced.increment();
+            return await(existing, id, waitNanos);
+        }
+
+        // Leader: run the call and publish its outcome to every waiter
+        flights.executed.increment();
+        try {
+            V value = load.run();
+            flight.complete(value);
+            return value;
+        } catch (SQLException | GeneralSecurityException | RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } catch (Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.inFlight.remove(id, flight);
+        }
+    }
+
+    private <V> V await(CompletableFuture<V> flight, int id, long waitNanos) throws SQLException, GeneralSecurityException {
+        try {
+            return waitNanos == NO_TIMEOUT ? flight.get() : flight.get(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new SQLTimeoutException("Timed out waiting for the in-flight load of token " + id + ".", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the in-flight load of token " + id + ".", e);
+        } catch (ExecutionException e) {
+            // Rethrow the leader's own exception so every caller sees the same failure
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof GeneralSecurityException) {
+                throw (GeneralSecurityException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SQLException("In-flight load of token " + id + " failed.", cause);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package src;
+
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Drives TokenRefreshScheduler with FakeTokenRefresher against temporary databases
+ * and checks its guarantees: the concurrency cap, jittered refresh times, per-service
+ * rate limits, conditional updates that lose to concurrent writes, and refreshes of
+ * tokens that have already expired. Prints one line per check and exits with status 1
+ * if any check fails.
+ *
+ * Usage: java src.TokenRefreshCheck
+ */
+public class TokenRefreshCheck {
+
+    private TokenRefreshCheck() {
+        throw new UnsupportedOperationException("Utility class");
+    }
+
+    private static final Logger logger = Logger.getLogger(TokenRefreshCheck.class.getName());
+
+    @FunctionalInterface
+    private interface Scenario {
+        void run(SecretKey key) throws Exception;
+    }
+
+    private static int failures = 0;
+
+    public static void main(String[] args) {
+        PrintStream originalOut = System.out;
+        try {
+            run("concurrency cap and jitter", TokenRefreshCheck::checkConcurrencyAndJitter, originalOut);
+            run("per-service rate limits", TokenRefreshCheck::checkRateLimits, originalOut);
+            run("lost races", TokenRefreshCheck::checkLostRaces, originalOut);
+            run("expired tokens", TokenRefreshCheck::checkExpiredTokens, originalOut);
+        } finally {
+            System.setOut(originalOut);
+        }
+        System.out.println(failures == 0 ? "All checks passed." : failures + " check(s) failed.");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // 40 tokens due within 3 seconds on 3 workers: never more than 3 calls at once, and not all at the start
+    private static void checkConcurrencyAndJitter(SecretKey key) throws Exception {
+        seed(key, "alpha", 40, Instant.now().plusSeconds(4));
+        FakeTokenRefresher refresher = new FakeTokenRefresher(Duration.ofHours(1), 50, 0);
+        try (TokenRefreshScheduler scheduler = new TokenRefreshScheduler(
+                refresher, key, Duration.ofSeconds(10), Duration.ofSeconds(1), 3)) {
+            scheduler.start(Duration.ofMinutes(1));
+            Thread.sleep(750);
+            long early = refresher.getCalls();
+            awaitFinished(scheduler, 40, Duration.ofSeconds(8));
+            expect(refresher.getMaxConcurrentCalls() <= 3, "max concurrent calls " + refresher.getMaxConcurrentCalls() + " <= 3");
+            expect(early < 30, early + " of 40 refreshes in the first 0.75s of a 3s jitter window < 30");
+            expect(scheduler.getRefreshed() == 40, "refreshed " + scheduler.getRefreshed() + " == 40");
+        }
+    }
+
+    // A limited service is held to its rate while an unlimited one is not slowed down by it
+    private static void checkRateLimits(SecretKey key) throws Exception {
+        seed(key, "limited", 60, Instant.now().plusSeconds(2));
+        seed(key, "unlimited", 20, Instant.now().plusSeconds(2));
+        FakeTokenRefresher refresher = new FakeTokenRefresher(Duration.ofHours(1), 0, 0);
+        try (TokenRefreshScheduler scheduler = new TokenRefreshScheduler(
+                refresher, key, Duration.ofSeconds(10), Duration.ofSeconds(2), 4)) {
+            scheduler.setServiceRateLimit("limited", 10);
+            long startNanos = System.nanoTime();
+            scheduler.start(Duration.ofMinutes(1));
+            Thread.sleep(2000);
+            double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+            long limitedCalls = refresher.getCalls("limited");
+            // Burst of one second's worth, then 10 per second
+            long allowed = (long) Math.ceil(10 + 10 * elapsedSeconds);
+            expect(limitedCalls <= allowed, "limited service calls " + limitedCalls + " <= " + allowed + " after "
+                    + String.format("%.1fs", elapsedSeconds));
+            expect(limitedCalls >= 20, "limited service calls " + limitedCalls + " >= 20 (bucket refills)");
+            expect(refresher.getCalls("unlimited") == 20, "unlimited service calls " + refresher.getCalls("unlimited") + " == 20");
+            awaitFinished(scheduler, 80, Duration.ofSeconds(8));
+            // Each throttled refresh reserves its own slot, so it is postponed once rather than retried
+            expect(scheduler.getRateLimited() <= 50, "rate-limited postponements " + scheduler.getRateLimited() + " <= 50");
+        }
+    }
+
+    // Tokens upserted while their refresh is in flight keep the new value; the refreshes count as lost races
+    private static void checkLostRaces(SecretKey key) throws Exception {
+        seed(key, "race", 20, Instant.now().plusSeconds(2));
+        FakeTokenRefresher refresher = new FakeTokenRefresher(Duration.ofHours(1), 400, 0);
+        try (TokenRefreshScheduler scheduler = new TokenRefreshScheduler(
+                refresher, key, Duration.ofSeconds(10), Duration.ofSeconds(2), 20)) {
+            scheduler.start(Duration.ofMinutes(1));
+            Thread.sleep(150);
+            List<TokenEntry> newer = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                newer.add(new TokenEntry("token-" + i, "race", "newer-" + i, Instant.now().plus(Duration.ofHours(2)),
+                        "{\"edited\":true}", "Bearer", key));
+            }
+            DatabaseManager.upsertTokens(newer);
+            awaitFinished(scheduler, 20, Duration.ofSeconds(5));
+            expect(scheduler.getLostRaces() == 20, "lost races " + scheduler.getLostRaces() + " == 20");
+            expect(scheduler.getRefreshed() == 0, "refreshed " + scheduler.getRefreshed() + " == 0");
+            int kept = 0;
+            for (TokenEntry token : DatabaseManager.getAllTokens()) {
+                if (token.getDecryptedToken(key).startsWith("newer-") && token.getMetadataJson() != null) {
+                    kept++;
+                }
+            }
+            expect(kept == 20, "upserted values kept " + kept + " == 20");
+        }
+    }
+
+    // Tokens that expired while no scheduler was running are refreshed on the first scan
+    private static void checkExpiredTokens(SecretKey key) throws Exception {
+        seed(key, "expired", 10, Instant.now().minusSeconds(60));
+        FakeTokenRefresher refresher = new FakeTokenRefresher(Duration.ofHours(1), 0, 0);
+        try (TokenRefreshScheduler scheduler = new TokenRefreshScheduler(
+                refresher, key, Duration.ofSeconds(10), Duration.ofSeconds(1), 2)) {
+            scheduler.start(Duration.ofMinutes(1));
+            awaitFinished(scheduler, 10, Duration.ofSeconds(5));
+            expect(scheduler.getRefreshed() == 10, "refreshed " + scheduler.getRefreshed() + " == 10");
+            expect(DatabaseManager.getExpiredTokens().isEmpty(), "no tokens left expired");
+        }
+    }
+
+    private static void run(String name, Scenario scenario, PrintStream out) {
+        System.setOut(out);
+        System.out.println("--- " + name + " ---");
+        Path databaseFile = null;
+        String previousUrl = DatabaseManager.getDatabaseUrl();
+        try {
+            databaseFile = Files.createTempFile("tokenmanager-refresh-", ".db");
+            DatabaseManager.setDatabaseUrl("jdbc:sqlite:" + databaseFile.toAbsolutePath() + "?busy_timeout=5000");
+            // DatabaseManager reports every write on System.out; keep only the check results
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            DatabaseManager.createTokensTable();
+            scenario.run(CryptoUtils.generateKey());
+        } catch (IOException e) {
+            failures++;
+            logger.log(Level.SEVERE, "Could not create temporary database.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures++;
+            logger.warning("Check interrupted.");
+        } catch (Exception e) {
+            failures++;
+            logger.log(Level.SEVERE, e, () -> "Check failed with an error: " + e.getMessage());
+        } finally {
+            DatabaseManager.setDatabaseUrl(previousUrl);
+            if (databaseFile != null) {
+                LoadGenerator.deleteDatabaseFiles(databaseFile);
+            }
+            System.setOut(out);
+        }
+    }
+
+    private static void seed(SecretKey key, String service, int count, Instant expirationDate) throws Exception {
+        List<TokenEntry> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tokens.add(new TokenEntry("token-" + i, service, "initial-" + i, expirationDate, null, "Bearer", key));
+        }
+        DatabaseManager.upsertTokens(tokens);
+    }
+
+    // Waits until that many refreshes have finished, i.e. been written, lost a race or failed
+    private static void awaitFinished(TokenRefreshScheduler scheduler, long refreshes, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (scheduler.getRefreshed() + scheduler.getLostRaces() + scheduler.getFailed() < refreshes
+                && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static void expect(boolean condition, String description) {
+        if (!condition) {
+            failures++;
+        }
+        // System.out is silenced while a scenario runs, so results go to stderr
+        System.err.println((condition ? "PASS " : "FAIL ") + description);
+    }
+}
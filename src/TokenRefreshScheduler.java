@@ -0,0 +1,292 @@
+package src;
+
+
+import java.security.GeneralSecurityException;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.crypto.SecretKey;
+
+/**
+ * Refreshes tokens before they expire so consumers never find them expired together.
+ *
+ * Every scan interval the scheduler queries tokens whose expiration_date falls
+ * within the lookahead window or has already passed (e.g. a refresh that failed
+ * close to expiry, or tokens that expired while the scheduler was not running).
+ * Each one gets a refresh time drawn uniformly
+ * between now and (expiration - minimum lead time), so tokens issued together
+ * are refreshed spread out rather than at the same instant. When a refresh is
+ * due it waits for its service's rate limit and then runs on a fixed pool, which
+ * caps the number of refreshes in flight. The new value is encrypted and stored
+ * with its new expiration date only if the stored value is still the one that was
+ * refreshed; if the token changed meanwhile (an upsert, or another node refreshing
+ * it), the refresh counts as a lost race and the newer value is kept. Failed
+ * refreshes are picked up again on the next scan as long as the token is still
+ * inside the window.
+ */
+public class TokenRefreshScheduler implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(TokenRefreshScheduler.class.getName());
+
+    private final TokenRefresher refresher;
+    private final SecretKey key;
+    private final Duration lookahead;
+    private final Duration minLeadTime;
+
+    // Fires scans, jittered refresh times and rate-limit retries; never runs a refresh itself
+    private final ScheduledExecutorService timer;
+    // Bounded pool that runs refresher calls; its size caps concurrent refreshes
+    private final ExecutorService workers;
+
+    // Token IDs with a refresh scheduled or running, so scans do not schedule them twice
+    private final Map<Integer, Boolean> pending = new ConcurrentHashMap<>();
+    private final Map<String, RateLimiter> serviceLimits = new ConcurrentHashMap<>();
+    private volatile double defaultPermitsPerSecond = 0; // 0 = unlimited
+
+    private final LongAdder refreshed = new LongAdder();
+    private final LongAdder lostRaces = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    /**
+     * @param refresher Issues new token values.
+     * @param key The key token values are encrypted with.
+     * @param lookahead Tokens expiring within this window from now are scheduled for refresh.
+     * @param minLeadTime Refreshes are scheduled no later than this long before expiry.
+     * @param maxConcurrentRefreshes Maximum number of refresher calls running at once.
+     * @throws IllegalArgumentException if an argument is null or out of range.
+     */
+    public TokenRefreshScheduler(TokenRefresher refresher, SecretKey key, Duration lookahead,
+                                 Duration minLeadTime, int maxConcurrentRefreshes) {
+        if (refresher == null || key == null || lookahead == null || minLeadTime == null) {
+            throw new IllegalArgumentException("refresher, key, lookahead and minLeadTime cannot be null");
+        }
+        if (lookahead.isNegative() || lookahead.isZero() || minLeadTime.isNegative() || maxConcurrentRefreshes <= 0) {
+            throw new IllegalArgumentException("lookahead and maxConcurrentRefreshes must be positive, minLeadTime non-negative");
+        }
+        this.refresher = refresher;
+        this.key = key;
+        this.lookahead = lookahead;
+        this.minLeadTime = minLeadTime;
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("token-refresh-timer"));
+        this.workers = Executors.newFixedThreadPool(maxConcurrentRefreshes, daemonThreads("token-refresh-worker"));
+    }
+
+    /**
+     * Limits refreshes for one service, e.g. to respect its token endpoint's quota.
+     * @param service The service name (null for tokens without a service).
+     * @param permitsPerSecond Maximum refreshes per second; bursts of up to one second's worth are allowed.
+     */
+    public void setServiceRateLimit(String service, double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        serviceLimits.put(serviceKey(service), new RateLimiter(permitsPerSecond));
+    }
+
+    /**
+     * Limits refreshes for every service without its own limit; each service gets its own budget.
+     * @param permitsPerSecond Maximum refreshes per second per service.
+     */
+    public void setDefaultRateLimit(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        defaultPermitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * Starts scanning for tokens nearing expiry, immediately and then every scanInterval.
+     * @param scanInterval Time between scans; should be shorter than lookahead - minLeadTime.
+     */
+    public void start(Duration scanInterval) {
+        long millis = scanInterval.toMillis();
+        if (millis <= 0) {
+            throw new IllegalArgumentException("scanInterval must be positive");
+        }
+        timer.scheduleWithFixedDelay(this::scanQuietly, 0, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Finds tokens that have expired or expire within the lookahead window and schedules a
+     * jittered refresh for each one that is not already pending; expired ones are due at once.
+     * @return The number of newly scheduled refreshes.
+     * @throws SQLException if a database access error occurs.
+     * @throws GeneralSecurityException if a stored row cannot be turned into a TokenEntry.
+     */
+    public int scan() throws SQLException, GeneralSecurityException {
+        Instant now = Instant.now();
+        // No lower bound: already expired tokens need a refresh most of all
+        List<TokenEntry> expiring = DatabaseManager.getTokensExpiringBetween(Instant.EPOCH, now.plus(lookahead));
+        int scheduled = 0;
+        for (TokenEntry token : expiring) {
+            if (pending.putIfAbsent(token.getId(), Boolean.TRUE) != null) {
+                continue;
+            }
+            long latest = Duration.between(now, token.getExpirationDate().minus(minLeadTime)).toMillis();
+            long delay = latest > 0 ? ThreadLocalRandom.current().nextLong(latest + 1) : 0;
+            try {
+                timer.schedule(() -> dispatch(token), delay, TimeUnit.MILLISECONDS);
+                scheduled++;
+            } catch (RejectedExecutionException e) {
+                pending.remove(token.getId()); // shutting down
+            }
+        }
+        return scheduled;
+    }
+
+    /**
+     * Stops scanning and waits for running refreshes to finish; scheduled ones are dropped.
+     */
+    @Override
+    public void close() {
+        timer.shutdownNow();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // --- Metrics ---
+    public long getRefreshed() { return refreshed.sum(); }
+    /** Refreshes discarded because the token's value changed while the refresher was called. */
+    public long getLostRaces() { return lostRaces.sum(); }
+    public long getFailed() { return failed.sum(); }
+    /** Number of times a due refresh was postponed by its service's rate limit. */
+    public long getRateLimited() { return rateLimited.sum(); }
+    public int getPending() { return pending.size(); }
+
+    // Runs on the timer thread when a refresh is due
+    private void dispatch(TokenEntry token) {
+        RateLimiter limiter = limiterFor(token.getService());
+        // The permit is reserved now, so the refresh runs at its own slot without asking again
+        long waitNanos = limiter == null ? 0 : limiter.reserve();
+        try {
+            if (waitNanos > 0) {
+                rateLimited.increment();
+                timer.schedule(() -> submit(token), waitNanos, TimeUnit.NANOSECONDS);
+            } else {
+                submit(token);
+            }
+        } catch (RejectedExecutionException e) {
+            pending.remove(token.getId()); // shutting down
+        }
+    }
+
+    private void submit(TokenEntry token) {
+        try {
+            workers.execute(() -> refresh(token.getId()));
+        } catch (RejectedExecutionException e) {
+            pending.remove(token.getId()); // shutting down
+        }
+    }
+
+    // Runs on a worker thread
+    private void refresh(int id) {
+        try {
+            // Re-read the token: it may have been refreshed elsewhere or deleted since the scan
+            TokenEntry current = DatabaseManager.getTokenById(id);
+            Instant now = Instant.now();
+            if (current == null || current.getExpirationDate() == null
+                    || !current.getExpirationDate().isBefore(now.plus(lookahead))) {
+                return;
+            }
+            TokenRefresher.RefreshedToken result = refresher.refresh(current, current.getDecryptedToken(key));
+            // Only replace the value that was refreshed; anything written since then wins
+            if (DatabaseManager.updateTokenValue(id, current.getEncryptedTokenWithIV(),
+                    CryptoUtils.encrypt(result.getTokenValue(), key), result.getExpirationDate())) {
+                refreshed.increment();
+            } else {
+                lostRaces.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.increment();
+        } catch (Exception e) {
+            failed.increment();
+            LOGGER.log(Level.WARNING, "Refreshing token with ID " + id + " failed; it will be retried on the next scan", e);
+        } finally {
+            pending.remove(id);
+        }
+    }
+
+    private void scanQuietly() {
+        try {
+            scan();
+        } catch (SQLException | GeneralSecurityException e) {
+            LOGGER.log(Level.SEVERE, "Scanning for tokens nearing expiry failed", e);
+        }
+    }
+
+    private RateLimiter limiterFor(String service) {
+        String key = serviceKey(service);
+        RateLimiter limiter = serviceLimits.get(key);
+        double defaultRate = defaultPermitsPerSecond;
+        if (limiter == null && defaultRate > 0) {
+            limiter = serviceLimits.computeIfAbsent(key, k -> new RateLimiter(defaultRate));
+        }
+        return limiter;
+    }
+
+    private static String serviceKey(String service) {
+        return service == null ? "" : service;
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Token bucket holding up to one second's worth of permits.
+     */
+    private static final class RateLimiter {
+        private final double permitsPerNano;
+        private final double capacity;
+        private double available;
+        private long lastRefill = System.nanoTime();
+
+        RateLimiter(double permitsPerSecond) {
+            this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1.0, permitsPerSecond);
+            this.available = capacity;
+        }
+
+        /**
+         * Reserves the next permit, going into debt if none is available yet, so that
+         * each waiting caller gets its own later slot instead of all retrying together.
+         * @return The nanoseconds the caller must wait before using its permit; 0 to go now.
+         */
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            available = Math.min(capacity, available + (now - lastRefill) * permitsPerNano);
+            lastRefill = now;
+            available -= 1.0;
+            if (available >= 0) {
+                return 0;
+            }
+            return Math.max(1, (long) Math.ceil(-available / permitsPerNano));
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package src;
+
+
+import java.time.Instant;
+
+/**
+ * Obtains a fresh credential for a token that is about to expire,
+ * e.g. by calling the issuing service's OAuth token endpoint.
+ * Implementations are called concurrently from TokenRefreshScheduler's worker threads.
+ */
+public interface TokenRefresher {
+
+    /**
+     * Issues a replacement for the given token.
+     * @param token The stored token that is nearing expiry.
+     * @param currentTokenValue The decrypted current token value.
+     * @return The new plain text token value and its expiration date.
+     * @throws Exception if the refresh fails; the token is retried on a later scan.
+     */
+    RefreshedToken refresh(TokenEntry token, String currentTokenValue) throws Exception;
+
+    /**
+     * A newly issued token value and its expiration date.
+     */
+    final class RefreshedToken {
+        private final String tokenValue;
+        private final Instant expirationDate;
+
+        public RefreshedToken(String tokenValue, Instant expirationDate) {
+            if (tokenValue == null || expirationDate == null) {
+                throw new IllegalArgumentException("tokenValue and expirationDate cannot be null");
+            }
+            this.tokenValue = tokenValue;
+            this.expirationDate = expirationDate;
+        }
+
+        public String getTokenValue() { return tokenValue; }
+        public Instant getExpirationDate() { return expirationDate; }
+
+        @Override
+        public String toString() {
+            return "RefreshedToken{tokenValue='[PROTECTED]', expirationDate=" + expirationDate + '}';
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package src;
+
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Group commit for concurrent single-row writes.
+ * Callers hand a write to submit() and block; a single writer thread collects
+ * the writes that arrive within a small time or size window, runs them in one
+ * transaction on its own connection and then hands every caller its own result.
+ * Each write runs inside a savepoint, so a write that fails (e.g. a constraint
+ * violation) is rolled back and reported to its caller without affecting the
+ * rest of the batch. If the commit itself fails, every write in the batch fails.
+ */
+public final class WriteCoalescer implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.getLogger(WriteCoalescer.class.getName());
+
+    // How often an idle writer re-checks whether it has been closed
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    /**
+     * A single write executed on the writer thread's connection.
+     * @param <T> The result handed back to the caller (generated entry, rows affected, ...).
+     */
+    @FunctionalInterface
+    interface Write<T> {
+        T apply(Connection conn) throws SQLException;
+    }
+
+    private static final class PendingWrite<T> {
+        final Write<T> write;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        T value;
+
+        PendingWrite(Write<T> write) {
+            this.write = write;
+        }
+
+        void execute(Connection conn) throws SQLException {
+            value = write.apply(conn);
+        }
+
+        void complete() {
+            result.complete(value);
+        }
+    }
+
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final LinkedBlockingQueue<PendingWrite<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean closed;
+    private Connection connection; // only touched by the writer thread
+
+    private final LongAdder batchesCommitted = new LongAdder();
+    private final LongAdder writesCommitted = new LongAdder();
+    private final LongAdder writesFailed = new LongAdder();
+
+    /**
+     * Starts the writer thread.
+     * @param maxBatchSize Maximum number of writes committed in one transaction.
+     * @param maxDelayMicros How long the writer waits for more writes after the first one arrives.
+     * @throws IllegalArgumentException if maxBatchSize is not positive or maxDelayMicros is negative.
+     */
+    WriteCoalescer(int maxBatchSize, long maxDelayMicros) {
+        if (maxBatchSize <= 0 || maxDelayMicros < 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive and maxDelayMicros non-negative");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.writer = new Thread(this::runWriter, "token-write-coalescer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a write and waits until the batch containing it has been committed.
+     * Once queued, the write may commit at any time, so an interrupt does not abandon
+     * the wait: the outcome is still reported and the interrupt flag is restored after.
+     * @param write The write to run on the writer thread's connection.
+     * @return The write's own result.
+     * @throws SQLException if the write or its batch's commit fails.
+     */
+    <T> T submit(Write<T> write) throws SQLException {
+        PendingWrite<T> pending = new PendingWrite<>(write);
+        synchronized (this) {
+            if (closed) {
+                throw new SQLException("Write coalescer is closed.");
+            }
+            queue.add(pending);
+        }
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return pending.result.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Coalesced write failed.", cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Stops accepting writes, commits everything already queued and stops the writer thread.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getBatchesCommitted() { return batchesCommitted.sum(); }
+    public long getWritesCommitted() { return writesCommitted.sum(); }
+    public long getWritesFailed() { return writesFailed.sum(); }
+
+    private void runWriter() {
+        List<PendingWrite<?>> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!closed || !queue.isEmpty()) {
+                PendingWrite<?> first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // Keep collecting until the batch is full or the window closes
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite<?> next = remaining > 0
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commitBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            SQLException stopped = new SQLException("Write coalescer stopped before the write was committed.");
+            batch.forEach(pending -> pending.result.completeExceptionally(stopped));
+            queue.forEach(pending -> pending.result.completeExceptionally(stopped));
+            closeConnection();
+        }
+    }
+
+    private void commitBatch(List<PendingWrite<?>> batch) {
+        List<PendingWrite<?>> succeeded = new ArrayList<>(batch.size());
+        try {
+            Connection conn = connection();
+            try (Statement stmt = conn.createStatement()) {
+                // Take the write lock up front so the batch cannot deadlock with readers upgrading
+                stmt.execute("BEGIN IMMEDIATE");
+                try {
+                    for (PendingWrite<?> pending : batch) {
+                        stmt.execute("SAVEPOINT coalesced_write");
+                        try {
+                            pending.execute(conn);
+                            stmt.execute("RELEASE coalesced_write");
+                            succeeded.add(pending);
+                        } catch (SQLException | RuntimeException e) {
+                            stmt.execute("ROLLBACK TO coalesced_write");
+                            stmt.execute("RELEASE coalesced_write");
+                            writesFailed.increment();
+                            pending.result.completeExceptionally(e);
+                        }
+                    }
+                    stmt.execute("COMMIT");
+                } catch (SQLException e) {
+                    rollbackQuietly(stmt);
+                    throw e;
+                }
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Coalesced batch of " + batch.size() + " writes failed", e);
+            writesFailed.add(succeeded.size());
+            for (PendingWrite<?> pending : batch) {
+                pending.result.completeExceptionally(e);
+            }
+            closeConnection(); // reconnect on the next batch
+            return;
+        }
+        batchesCommitted.increment();
+        writesCommitted.add(succeeded.size());
+        succeeded.forEach(PendingWrite::complete);
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null) {
+            connection = DatabaseManager.connect();
+        }
+        return connection;
+    }
+
+    private void closeConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Error closing writer connection", e);
+            }
+            connection = null;
+        }
+    }
+
+    private static void rollbackQuietly(Statement stmt) {
+        try {
+            stmt.execute("ROLLBACK");
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Rollback after failed batch also failed", e);
+        }
+    }
+}